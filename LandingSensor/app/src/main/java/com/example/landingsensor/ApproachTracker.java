@@ -0,0 +1,130 @@
+package com.example.landingsensor;
+
+/**
+ * Picks approaches out of a stream of height samples and summarizes each one as the samples
+ * arrive, so nothing has to be rescanned once the approach is over.
+ *
+ * An approach starts when the height drops below {@code APPROACH_START_FT} from at or above
+ * it, so connecting on the ground isn't an approach.  It ends either on a climb back above it
+ * (a go-around) or once the aircraft has stayed on the ground for {@code ROLLOUT_MS} after
+ * touchdown.
+ */
+public class ApproachTracker {
+    public static final double APPROACH_START_FT = 30.0;
+    // Climb this far back above the start height before calling it a go-around.  Start plus
+    // margin must stay inside the sensor's ~39ft range.
+    public static final double GO_AROUND_MARGIN_FT = 5.0;
+    public static final double FINAL_FT = 10.0;
+    public static final double TOUCHDOWN_FT = 0.5;
+    public static final long ROLLOUT_MS = 5000;
+    // Sensor samples at 10Hz.
+    public static final long SAMPLE_PERIOD_MS = 100;
+    // Time constant for smoothing vertical speed, in ms.
+    private static final double SINK_RATE_TAU_MS = 500.0;
+
+    public static class Approach {
+        public long startTime;
+        public long endTime;
+        public double minHeight = Double.MAX_VALUE;
+        // Vertical speed when first crossing below TOUCHDOWN_FT, in ft/s (positive down), or
+        // NaN if the aircraft never touched down.
+        public double touchdownSinkRate = Double.NaN;
+        public long finalMs;
+        public int sampleCount;
+        public int lostSamples;
+
+        public boolean landed() {
+            return !Double.isNaN(touchdownSinkRate);
+        }
+    }
+
+    public interface Listener {
+        void onApproachFinished(Approach approach);
+    }
+
+    private final Listener mListener;
+    private Approach mApproach;
+    private long mLastTime = -1;
+    private double mLastHeight;
+    private double mSinkRate;
+    private long mLastAirborneTime;
+
+    public ApproachTracker(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @param time Sample time in ms, from a monotonic clock.
+     * @param height Height above ground in feet.
+     */
+    public void onSample(long time, double height) {
+        final long dt = (mLastTime < 0) ? 0 : time - mLastTime;
+        if (dt > 0) {
+            final double alpha = dt / (dt + SINK_RATE_TAU_MS);
+            mSinkRate += alpha * ((mLastHeight - height) * 1000.0 / dt - mSinkRate);
+        }
+
+        if (mApproach == null && height < APPROACH_START_FT
+                && mLastTime >= 0 && mLastHeight >= APPROACH_START_FT) {
+            mApproach = new Approach();
+            mApproach.startTime = time;
+        }
+
+        if (mApproach != null) {
+            final Approach a = mApproach;
+            a.sampleCount++;
+            if (dt > SAMPLE_PERIOD_MS * 3 / 2 && a.startTime != time) {
+                a.lostSamples += (int) ((dt + SAMPLE_PERIOD_MS / 2) / SAMPLE_PERIOD_MS) - 1;
+            }
+            a.minHeight = Math.min(a.minHeight, height);
+            if (height < FINAL_FT && !a.landed() && a.startTime != time) {
+                a.finalMs += dt;
+            }
+            if (height < TOUCHDOWN_FT) {
+                if (!a.landed()) {
+                    a.touchdownSinkRate = mSinkRate;
+                }
+            } else {
+                mLastAirborneTime = time;
+            }
+            a.endTime = time;
+
+            if (height > APPROACH_START_FT + GO_AROUND_MARGIN_FT
+                    || (a.landed() && time - mLastAirborneTime >= ROLLOUT_MS)) {
+                finish();
+            }
+        }
+
+        mLastTime = time;
+        mLastHeight = height;
+    }
+
+    /**
+     * Ends any approach in progress, e.g. when the session ends.
+     */
+    public void finish() {
+        if (mApproach != null) {
+            final Approach a = mApproach;
+            mApproach = null;
+            mListener.onApproachFinished(a);
+        }
+    }
+
+    /**
+     * Forgets everything, including any approach in progress, e.g. before a new session.
+     */
+    public void reset() {
+        mApproach = null;
+        mLastTime = -1;
+        mLastHeight = 0;
+        mSinkRate = 0;
+        mLastAirborneTime = 0;
+    }
+
+    /**
+     * @return True while an approach is in progress.
+     */
+    public boolean inApproach() {
+        return mApproach != null;
+    }
+}
@@ -26,10 +26,18 @@ import android.bluetooth.BluetoothGattDescriptor;
 import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothManager;
 import android.bluetooth.BluetoothProfile;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Binder;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.util.Log;
 
 import java.util.List;
@@ -48,6 +56,27 @@ public class BluetoothLeService extends Service {
     private BluetoothAdapter mBluetoothAdapter;
     private String mBluetoothDeviceAddress;
     private BluetoothGatt mBluetoothGatt;
+    private BluetoothLeScanner mBluetoothLeScanner;
+    // Address the service keeps reconnecting to whenever it advertises, or null.
+    private String mAutoConnectAddress;
+    // Scans are started and stopped from both the main and binder threads; guarded by
+    // mScanLock.
+    private final Object mScanLock = new Object();
+    private boolean mBackgroundScanning;
+    // Link parameters follow the flight phase; guarded by this.
+    private final LinkPolicy mLinkPolicy = new LinkPolicy();
+    private final LinkStats mLinkStats = new LinkStats();
+    // Mode last successfully requested from the stack, or -1.
+    private int mAppliedLinkMode = -1;
+    private boolean mLinkUp = false;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private static final long LINK_TICK_MS = 1000;
+    private SampleSimulator mSimulator;
+    private final SampleStream mSamples = new SampleStream();
+    // Guarded by this.
+    private Sample mLastSample = Sample.EMPTY;
+    // Everything received while the service runs, across reconnects.
+    private final SampleHistory mHistory = new SampleHistory();
 
     public final static String ACTION_GATT_CONNECTED =
             "com.example.bluetooth.le.ACTION_GATT_CONNECTED";
@@ -55,16 +84,16 @@ public class BluetoothLeService extends Service {
             "com.example.bluetooth.le.ACTION_GATT_DISCONNECTED";
     public final static String ACTION_GATT_SERVICES_DISCOVERED =
             "com.example.bluetooth.le.ACTION_GATT_SERVICES_DISCOVERED";
-    public final static String ACTION_DATA_AVAILABLE =
-            "com.example.bluetooth.le.ACTION_DATA_AVAILABLE";
-    public final static String SENSOR_DIST =
-            "com.example.bluetooth.le.SENSOR_DIST";
-    public final static String SENSOR_FLUX =
-            "com.example.bluetooth.le.SENSOR_FLUX";
-    public final static String SENSOR_TEMP =
-            "com.example.bluetooth.le.SENSOR_TEMP";
-    public final static String SENSOR_STATUS =
-            "com.example.bluetooth.le.SENSOR_STATUS";
+    public final static String ACTION_LINK_UPDATED =
+            "com.example.bluetooth.le.ACTION_LINK_UPDATED";
+    public final static String LINK_MODE =
+            "com.example.bluetooth.le.LINK_MODE";
+    public final static String LINK_INTERVAL =
+            "com.example.bluetooth.le.LINK_INTERVAL";
+    public final static String LINK_PHY =
+            "com.example.bluetooth.le.LINK_PHY";
+    public final static String LINK_LATENCY =
+            "com.example.bluetooth.le.LINK_LATENCY";
 
     // Implements callback methods for GATT events that the app cares about.  For example,
     // connection change and services discovered.
@@ -76,6 +105,10 @@ public class BluetoothLeService extends Service {
                 intentAction = ACTION_GATT_CONNECTED;
                 broadcastUpdate(intentAction);
                 Log.i(TAG, "Connected to GATT server.");
+                onLinkConnected();
+                // Connected some other way while waiting for the sensor to advertise.
+                stopBackgroundScan();
+                gatt.readPhy();
                 // Attempts to discover services after successful connection.
                 Log.i(TAG, "Attempting to start service discovery:" +
                         mBluetoothGatt.discoverServices());
@@ -83,7 +116,13 @@ public class BluetoothLeService extends Service {
             } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
                 intentAction = ACTION_GATT_DISCONNECTED;
                 Log.i(TAG, "Disconnected from GATT server.");
+                onLinkDisconnected();
                 broadcastUpdate(intentAction);
+                // Lost the link without being asked to; pick the sensor back up as soon as
+                // it advertises again.
+                if (mAutoConnectAddress != null) {
+                    startBackgroundScan();
+                }
             }
         }
 
@@ -101,14 +140,224 @@ public class BluetoothLeService extends Service {
                                          BluetoothGattCharacteristic characteristic,
                                          int status) {
             if (status == BluetoothGatt.GATT_SUCCESS) {
-                broadcastUpdate(ACTION_DATA_AVAILABLE, characteristic);
+                publishSample(characteristic);
             }
         }
 
         @Override
         public void onCharacteristicChanged(BluetoothGatt gatt,
                                             BluetoothGattCharacteristic characteristic) {
-            broadcastUpdate(ACTION_DATA_AVAILABLE, characteristic);
+            Trace.beginSection("LS notify");
+            try {
+                publishSample(characteristic);
+            } finally {
+                Trace.endSection();
+            }
+        }
+
+        @Override
+        public void onPhyUpdate(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            onPhy(txPhy, rxPhy, status);
+        }
+
+        @Override
+        public void onPhyRead(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            onPhy(txPhy, rxPhy, status);
+        }
+
+        // Hidden in the SDK, but called by the stack on API 26+ whenever the connection
+        // parameters change.  Interval is in units of 1.25ms.
+        public void onConnectionUpdated(BluetoothGatt gatt, int interval, int latency,
+                                        int timeout, int status) {
+            if (status != BluetoothGatt.GATT_SUCCESS) {
+                Log.w(TAG, "Connection update failed: " + status);
+                return;
+            }
+            Log.d(TAG, String.format("Connection interval %.2f ms, peripheral latency %d, timeout %d ms",
+                    interval * 1.25, latency, timeout * 10));
+            synchronized (BluetoothLeService.this) {
+                mLinkStats.onConnectionUpdated(interval * 1.25);
+            }
+            broadcastLinkUpdate();
+        }
+    };
+
+    private void onPhy(int txPhy, int rxPhy, int status) {
+        if (status != BluetoothGatt.GATT_SUCCESS) {
+            Log.w(TAG, "PHY update failed: " + status);
+            return;
+        }
+        Log.d(TAG, String.format("PHY tx %s, rx %s", LinkStats.phyName(txPhy), LinkStats.phyName(rxPhy)));
+        synchronized (this) {
+            mLinkStats.onPhyUpdated(rxPhy);
+        }
+        broadcastLinkUpdate();
+    }
+
+    private synchronized void onLinkConnected() {
+        final long now = SystemClock.elapsedRealtime();
+        mLinkPolicy.reset(now);
+        mLinkStats.onConnected();
+        mLastSample = Sample.EMPTY;
+        mAppliedLinkMode = -1;
+        mLinkUp = true;
+        mHandler.removeCallbacks(mLinkTick);
+        mHandler.postDelayed(mLinkTick, LINK_TICK_MS);
+    }
+
+    private synchronized void onLinkDisconnected() {
+        if (!mLinkUp) {
+            return;
+        }
+        mLinkUp = false;
+        mHandler.removeCallbacks(mLinkTick);
+        Log.i(TAG, "Link report:\n" + mLinkStats.report());
+    }
+
+    // Called for every distance notification, on the binder thread.
+    private synchronized void onDistanceSample(double distance) {
+        final long now = SystemClock.elapsedRealtime();
+        mLinkStats.onNotification(now);
+        if (mLinkPolicy.onDistance(now, distance) >= 0) {
+            // Requesting link changes from a binder callback can deadlock some stacks.
+            mHandler.post(mApplyLinkMode);
+        }
+    }
+
+    private final Runnable mApplyLinkMode = new Runnable() {
+        @Override
+        public void run() {
+            applyLinkMode();
+        }
+    };
+
+    // Relaxes the link once distances stop arriving, and retries requests the stack refused
+    // (it refuses while another GATT operation is in flight).
+    private final Runnable mLinkTick = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (BluetoothLeService.this) {
+                mLinkPolicy.onTick(SystemClock.elapsedRealtime());
+            }
+            applyLinkMode();
+            mHandler.postDelayed(this, LINK_TICK_MS);
+        }
+    };
+
+    private void applyLinkMode() {
+        final BluetoothGatt gatt = mBluetoothGatt;
+        final int mode;
+        synchronized (this) {
+            mode = mLinkPolicy.getMode();
+            if (gatt == null || mode == mAppliedLinkMode) {
+                return;
+            }
+        }
+        final int priority;
+        final int phy;
+        switch (mode) {
+            case LinkPolicy.MODE_HIGH:
+                priority = BluetoothGatt.CONNECTION_PRIORITY_HIGH;
+                // 2M halves air time per packet; range doesn't matter with the sensor on board.
+                phy = BluetoothDevice.PHY_LE_2M_MASK;
+                break;
+            case LinkPolicy.MODE_LOW_POWER:
+                priority = BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER;
+                phy = BluetoothDevice.PHY_LE_1M_MASK;
+                break;
+            default:
+                priority = BluetoothGatt.CONNECTION_PRIORITY_BALANCED;
+                phy = BluetoothDevice.PHY_LE_1M_MASK;
+        }
+        if (!gatt.requestConnectionPriority(priority)) {
+            Log.d(TAG, "Connection priority request refused, will retry");
+            return;
+        }
+        if (mBluetoothAdapter.isLe2MPhySupported()) {
+            gatt.setPreferredPhy(phy, phy, BluetoothDevice.PHY_OPTION_NO_PREFERRED);
+        }
+        synchronized (this) {
+            Log.i(TAG, String.format("Link mode %s (was %s)", LinkPolicy.modeName(mode),
+                    (mAppliedLinkMode >= 0) ? LinkPolicy.modeName(mAppliedLinkMode) : "default"));
+            if (mAppliedLinkMode >= 0) {
+                Log.i(TAG, "Link report:\n" + mLinkStats.report());
+            }
+            mAppliedLinkMode = mode;
+            mLinkStats.setMode(mode);
+        }
+        broadcastLinkUpdate();
+    }
+
+    private void broadcastLinkUpdate() {
+        final Intent intent = new Intent(ACTION_LINK_UPDATED);
+        synchronized (this) {
+            intent.putExtra(LINK_MODE, LinkPolicy.modeName(mLinkPolicy.getMode()));
+            intent.putExtra(LINK_INTERVAL, mLinkStats.getIntervalMs());
+            intent.putExtra(LINK_PHY, LinkStats.phyName(mLinkStats.getPhy()));
+            intent.putExtra(LINK_LATENCY, mLinkStats.getExpectedLatencyMs());
+        }
+        sendBroadcast(intent);
+    }
+
+    /**
+     * Plays synthetic approaches through the same decode and broadcast path as real
+     * notifications, instead of connecting to a sensor.  For benchmarks.
+     *
+     * @return False if this build doesn't include the simulator.
+     */
+    public boolean startSimulation() {
+        if (!BuildConfig.SIMULATION_ENABLED) {
+            return false;
+        }
+        if (mSimulator == null) {
+            mSimulator = new SampleSimulator(mHandler, new SampleSimulator.Listener() {
+                @Override
+                public void onSimulatedValue(BluetoothGattCharacteristic characteristic) {
+                    publishSample(characteristic);
+                }
+            });
+        }
+        if (!mSimulator.isRunning()) {
+            Log.i(TAG, "Simulating sensor");
+            synchronized (this) {
+                mLastSample = Sample.EMPTY;
+            }
+            broadcastUpdate(ACTION_GATT_CONNECTED);
+            mSimulator.start();
+        }
+        return true;
+    }
+
+    /**
+     * @return Connection parameters and notification timing seen in each link mode.
+     */
+    public synchronized String getLinkReport() {
+        return mLinkStats.report();
+    }
+
+    // Low duty cycle scan for the known sensor, filtered in the controller so the app is
+    // only woken when that sensor actually advertises.
+    private final ScanCallback mBackgroundScanCallback = new ScanCallback() {
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            final String address = result.getDevice().getAddress();
+            if (!address.equals(mAutoConnectAddress)) {
+                return;
+            }
+            Log.i(TAG, String.format("Known sensor %s advertising (%d dBm), connecting", address, result.getRssi()));
+            stopBackgroundScan();
+            connect(address);
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            Log.w(TAG, "Background scan failed: " + errorCode + ", connecting directly");
+            synchronized (mScanLock) {
+                mBackgroundScanning = false;
+            }
+            if (mAutoConnectAddress != null) {
+                connect(mAutoConnectAddress);
+            }
         }
     };
 
@@ -117,38 +366,78 @@ public class BluetoothLeService extends Service {
         sendBroadcast(intent);
     }
 
-    private void broadcastUpdate(final String action,
-                                 final BluetoothGattCharacteristic characteristic) {
-        final Intent intent = new Intent(action);
+    // Decodes a notification into a sample and publishes it to the sample stream.  Synchronized
+    // because each sample builds on the last.
+    private synchronized void publishSample(final BluetoothGattCharacteristic characteristic) {
+        final long now = SystemClock.elapsedRealtime();
+        final Sample sample;
         String uuid = characteristic.getUuid().toString();
+        Trace.beginSection("LS decode");
         switch (uuid) {
             case GattAttributes.SENSOR_DIST_CHARACTERISTIC:
                 // Distance is in CM; convert to feet
                 double distance = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, 0) * 0.0328084;
                 Log.d(TAG, String.format("Distance: %02f", distance));
-                intent.putExtra(SENSOR_DIST, distance);
+                sample = mLastSample.with(now, Sample.DISTANCE, distance, mLastSample.flux, mLastSample.temp, mLastSample.status);
+                onDistanceSample(distance);
                 break;
             case GattAttributes.SENSOR_FLUX_CHARACTERISTIC:
                 int flux = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, 0);
                 Log.d(TAG, String.format("Flux: %d", flux));
-                intent.putExtra(SENSOR_FLUX, flux);
+                sample = mLastSample.with(now, Sample.FLUX, mLastSample.distance, flux, mLastSample.temp, mLastSample.status);
                 break;
             case GattAttributes.SENSOR_TEMP_CHARACTERISTIC:
                 // Temp is in 10th of C, convert to C
                 double temp = characteristic.getIntValue(BluetoothGattCharacteristic.FORMAT_UINT16, 0) / 10;
                 Log.d(TAG, String.format("Temp: %01f", temp));
-                intent.putExtra(SENSOR_TEMP, temp);
+                sample = mLastSample.with(now, Sample.TEMP, mLastSample.distance, mLastSample.flux, temp, mLastSample.status);
                 break;
             case GattAttributes.SENSOR_STATUS_CHARACTERISTIC:
                 String status = characteristic.getStringValue(0);
                 Log.d(TAG, String.format("Status: %s", status));
-                intent.putExtra(SENSOR_STATUS, status);
+                sample = mLastSample.with(now, Sample.STATUS, mLastSample.distance, mLastSample.flux, mLastSample.temp, status);
                 break;
             default:
                 Log.w(TAG, String.format("Unhandled data from %s (%s)", uuid, GattAttributes.lookup(uuid)));
+                sample = null;
+        }
+        Trace.endSection();
+        if (sample == null) {
+            return;
         }
+        mLastSample = sample;
+        recordHistory(sample);
 
-        sendBroadcast(intent);
+        Trace.beginSection("LS publish");
+        mSamples.publish(sample);
+        Trace.endSection();
+    }
+
+    private void recordHistory(Sample sample) {
+        final float value;
+        switch (sample.channel) {
+            case Sample.DISTANCE: value = (float) sample.distance; break;
+            case Sample.FLUX: value = sample.flux; break;
+            case Sample.TEMP: value = (float) sample.temp; break;
+            case Sample.STATUS: value = SampleHistory.statusCode(sample.status); break;
+            default: return;
+        }
+        mHistory.append(sample.channel, sample.timeMs, value);
+    }
+
+    /**
+     * @return Decoded samples from the sensor, for any number of consumers.
+     */
+    public SampleStream getSamples() {
+        return mSamples;
+    }
+
+    /**
+     * @return Every sample received since the service started, for zoomable review.  Times are
+     *         from {@code SystemClock.elapsedRealtime()}.
+     */
+    public SampleHistory getHistory() {
+        return mHistory;
     }
 
     public class LocalBinder extends Binder {
@@ -242,6 +531,86 @@ public class BluetoothLeService extends Service {
         return true;
     }
 
+    /**
+     * Connects to the given sensor as soon as it is seen advertising, and reconnects to it
+     * whenever the link drops until {@code disconnect()} is called.  Uses a low-power,
+     * hardware-filtered scan so waiting for the sensor costs almost nothing.
+     *
+     * @param address The device address of the destination device.
+     *
+     * @return Return true if the sensor is being waited for or connected to.
+     */
+    public boolean autoConnect(final String address) {
+        if (mBluetoothAdapter == null) {
+            Log.w(TAG, "BluetoothAdapter not initialized");
+            return false;
+        }
+        if (address == null) {
+            Log.w(TAG, "unspecified address.");
+            return false;
+        }
+        if (mBluetoothDeviceAddress != null && !address.equals(mBluetoothDeviceAddress)) {
+            // Switching sensors; drop the old connection entirely.
+            close();
+            mBluetoothDeviceAddress = null;
+        }
+        mAutoConnectAddress = address;
+        if (isConnectedTo(address)) {
+            // Already up; the disconnect path starts the scan if the link drops.
+            return true;
+        }
+        if (startBackgroundScan()) {
+            return true;
+        }
+        return connect(address);
+    }
+
+    private synchronized boolean isConnectedTo(final String address) {
+        return mLinkUp && mBluetoothGatt != null && address.equals(mBluetoothDeviceAddress);
+    }
+
+    private boolean startBackgroundScan() {
+        synchronized (mScanLock) {
+            if (mBackgroundScanning) {
+                return true;
+            }
+            if (mBluetoothLeScanner == null) {
+                mBluetoothLeScanner = mBluetoothAdapter.getBluetoothLeScanner();
+                if (mBluetoothLeScanner == null) {
+                    Log.w(TAG, "BluetoothLeScanner unavailable, is Bluetooth off?");
+                    return false;
+                }
+            }
+            try {
+                mBluetoothLeScanner.startScan(
+                        DeviceScanActivity.makeSensorScanFilters(mAutoConnectAddress),
+                        new ScanSettings.Builder()
+                                .setScanMode(ScanSettings.SCAN_MODE_LOW_POWER)
+                                .setCallbackType(ScanSettings.CALLBACK_TYPE_FIRST_MATCH)
+                                .build(),
+                        mBackgroundScanCallback);
+            } catch (SecurityException e) {
+                Log.w(TAG, "Not permitted to scan: " + e.getMessage());
+                return false;
+            }
+            mBackgroundScanning = true;
+            Log.d(TAG, "Background scan started for " + mAutoConnectAddress);
+            return true;
+        }
+    }
+
+    private void stopBackgroundScan() {
+        synchronized (mScanLock) {
+            if (!mBackgroundScanning) {
+                return;
+            }
+            mBackgroundScanning = false;
+            if (mBluetoothAdapter.isEnabled()) {
+                mBluetoothLeScanner.stopScan(mBackgroundScanCallback);
+            }
+        }
+    }
+
     /**
      * Disconnects an existing connection or cancel a pending connection. The disconnection result
      * is reported asynchronously through the
@@ -249,6 +618,14 @@ public class BluetoothLeService extends Service {
      * callback.
      */
     public void disconnect() {
+        if (mSimulator != null && mSimulator.isRunning()) {
+            mSimulator.stop();
+            broadcastUpdate(ACTION_GATT_DISCONNECTED);
+        }
+        mAutoConnectAddress = null;
+        if (mBluetoothAdapter != null) {
+            stopBackgroundScan();
+        }
         if (mBluetoothAdapter == null || mBluetoothGatt == null) {
             Log.w(TAG, "BluetoothAdapter not initialized");
             return;
@@ -261,11 +638,19 @@ public class BluetoothLeService extends Service {
      * released properly.
      */
     public void close() {
+        if (mSimulator != null) {
+            mSimulator.stop();
+        }
+        if (mBluetoothAdapter != null) {
+            stopBackgroundScan();
+        }
         if (mBluetoothGatt == null) {
             return;
         }
         mBluetoothGatt.close();
         mBluetoothGatt = null;
+        // close() drops the link without a disconnect callback.
+        onLinkDisconnected();
     }
 
     /**
@@ -0,0 +1,109 @@
+package com.example.landingsensor;
+
+/**
+ * Decides what to call out, given a stream of distances and a periodic repeat tick.  Kept free
+ * of Android dependencies so the exact same decisions can be replayed off-device (see the
+ * {@code tuner} module).
+ */
+public class CalloutPolicy {
+    // How often the app calls onTick(), in ms.
+    public static final long TICK_MS = 1000;
+
+    private CalloutTable mTable;
+    private int mBand = 0;
+    private long mRepeatIntervalMs = 0;
+    private long mLastSpokenTime;
+    private double mLastDistance = Double.NaN;
+
+    public CalloutPolicy(CalloutTable table) {
+        mTable = table;
+    }
+
+    /**
+     * Replaces the callout table, forgetting the current band.
+     */
+    public void setTable(CalloutTable table) {
+        mTable = table;
+        mBand = 0;
+    }
+
+    public CalloutTable getTable() {
+        return mTable;
+    }
+
+    /**
+     * @param repeatIntervalMs Repeat the current callout after this long without one, or 0
+     *                         to never repeat.
+     */
+    public void setRepeatIntervalMs(long repeatIntervalMs) {
+        mRepeatIntervalMs = repeatIntervalMs;
+    }
+
+    /**
+     * Forgets all state, e.g. before replaying a new session.
+     */
+    public void reset(long now) {
+        mBand = 0;
+        mLastSpokenTime = now;
+        mLastDistance = Double.NaN;
+    }
+
+    /**
+     * @return The current band of the callout table.
+     */
+    public int getBand() {
+        return mBand;
+    }
+
+    /**
+     * @return The distance of the latest sample, or NaN before the first.
+     */
+    public double getLastDistance() {
+        return mLastDistance;
+    }
+
+    /**
+     * @return What a repeat says for the given distance: whole feet, never negative.
+     */
+    public static int repeatHeight(double distance) {
+        return Math.max(0, (int) distance);
+    }
+
+    /**
+     * Handles a new distance sample.
+     *
+     * @param distance Distance to the ground in feet.
+     * @param now Current time in ms.
+     * @param silent True if nothing should be said, e.g. speech is off or data is stale.  The
+     *               band is still tracked so that unmuting doesn't replay an old callout.
+     * @return The text to call out, or null.
+     */
+    public String onSample(double distance, long now, boolean silent) {
+        mLastDistance = distance;
+        final int band = mTable.bandFor(distance, mBand);
+        // Only descending into a band is called out; its label is the height just passed.
+        final boolean descended = band > mBand;
+        mBand = band;
+        if (silent || !descended) {
+            return null;
+        }
+        mLastSpokenTime = now;
+        return mTable.label(band);
+    }
+
+    /**
+     * Handles the periodic tick, repeating the current height if it's been a while.
+     *
+     * @return The text to call out, or null.
+     */
+    public String onTick(long now, boolean silent) {
+        if (silent || mRepeatIntervalMs <= 0 || mBand == 0 || Double.isNaN(mLastDistance)) {
+            return null;
+        }
+        if (now - mLastSpokenTime <= mRepeatIntervalMs) {
+            return null;
+        }
+        mLastSpokenTime = now;
+        return String.valueOf(repeatHeight(mLastDistance));
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.landingsensor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A table of heights at which to call out the distance to the ground, compiled into lookup
+ * arrays so that deciding what to say for a sample is a couple of array reads.
+ *
+ * The heights split the range into bands: band 0 is above every callout, and band k (k >= 1)
+ * is at or below the k-th highest callout.  A band is entered as soon as the distance drops to
+ * its callout height, but is only left upwards once the distance exceeds that height by the
+ * hysteresis, so hovering on a boundary doesn't repeat the callout.
+ *
+ * Tables are written as a comma separated list of heights in feet, where a
+ * {@code high-low/step} entry expands to every {@code step} feet from {@code high} down to
+ * {@code low}, e.g. {@code "50-20/10, 10, 5-1/1"}.
+ */
+public class CalloutTable {
+    public static final float DEFAULT_HYSTERESIS = 0.5f;
+    // Highest callout or hysteresis accepted, well past the sensor's range; bounds the lookup
+    // arrays.
+    public static final float MAX_HEIGHT = 1000;
+    // Lookup resolution, i.e. one array entry per tenth of a foot.
+    private static final int STEPS_PER_FOOT = 10;
+
+    // Callout heights, highest first.
+    private final float[] mHeights;
+    // Spoken text for each band; mLabels[0] (above all callouts) is null.
+    private final String[] mLabels;
+    // Band for each quantized distance when descending, i.e. using the callout heights.
+    private final byte[] mBand;
+    // Band for each quantized distance when climbing, i.e. using heights plus hysteresis.
+    private final byte[] mBandClimbing;
+
+    private CalloutTable(List<Float> heights, float hysteresis) {
+        if (heights.isEmpty()) {
+            throw new IllegalArgumentException("Callout table is empty");
+        }
+        if (heights.size() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many callouts: " + heights.size());
+        }
+        if (!(hysteresis >= 0 && hysteresis <= MAX_HEIGHT)) {
+            throw new IllegalArgumentException("Bad hysteresis: " + hysteresis);
+        }
+        Collections.sort(heights, Collections.<Float>reverseOrder());
+        for (int i = heights.size() - 1; i > 0; i--) {
+            if (heights.get(i).equals(heights.get(i - 1))) {
+                heights.remove(i);
+            }
+        }
+
+        mHeights = new float[heights.size()];
+        mLabels = new String[heights.size() + 1];
+        for (int i = 0; i < mHeights.length; i++) {
+            mHeights[i] = heights.get(i);
+            mLabels[i + 1] = formatHeight(mHeights[i]);
+        }
+
+        // One spare entry past the highest threshold, which is band 0 in both arrays.
+        final int size = quantize(mHeights[0] + hysteresis) + 2;
+        mBand = new byte[size];
+        mBandClimbing = new byte[size];
+        for (int i = 0; i < size; i++) {
+            final float distance = (float) i / STEPS_PER_FOOT;
+            byte band = 0;
+            byte bandClimbing = 0;
+            for (float height : mHeights) {
+                if (distance <= height) band++;
+                if (distance <= height + hysteresis) bandClimbing++;
+            }
+            mBand[i] = band;
+            mBandClimbing[i] = bandClimbing;
+        }
+    }
+
+    /**
+     * Compiles a callout table from its text form.
+     *
+     * @throws IllegalArgumentException if the text can't be parsed.
+     */
+    public static CalloutTable parse(String spec, float hysteresis) {
+        final List<Float> heights = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            try {
+                final int dash = entry.indexOf('-', 1);
+                if (dash < 0) {
+                    heights.add(parseHeight(entry));
+                    continue;
+                }
+                final int slash = entry.indexOf('/', dash);
+                final float high = parseHeight(entry.substring(0, dash));
+                final float low = parseHeight(entry.substring(dash + 1, slash < 0 ? entry.length() : slash));
+                final float step = (slash < 0) ? 1 : Float.parseFloat(entry.substring(slash + 1).trim());
+                if (step <= 0 || low > high) {
+                    throw new IllegalArgumentException("Bad callout range: " + entry);
+                }
+                // Step in whole tenths to avoid accumulating float error.
+                final int stepTenths = Math.max(1, Math.round(step * STEPS_PER_FOOT));
+                for (int h = Math.round(high * STEPS_PER_FOOT); h >= Math.round(low * STEPS_PER_FOOT); h -= stepTenths) {
+                    heights.add((float) h / STEPS_PER_FOOT);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad callout entry: " + entry, e);
+            }
+        }
+        return new CalloutTable(heights, hysteresis);
+    }
+
+    /**
+     * Builds a table with a callout every {@code spacing} feet from the ground up to (but not
+     * including) {@code maxDistance}.
+     */
+    public static CalloutTable evenlySpaced(float maxDistance, float spacing, float hysteresis) {
+        if (!(spacing > 0)) {
+            throw new IllegalArgumentException("Callout spacing must be positive: " + spacing);
+        }
+        if (!(maxDistance <= MAX_HEIGHT) || maxDistance / spacing > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many callouts: every " + spacing + " ft below " + maxDistance);
+        }
+        final List<Float> heights = new ArrayList<>();
+        for (int i = 0; i * spacing < maxDistance; i++) {
+            heights.add(i * spacing);
+        }
+        return new CalloutTable(heights, hysteresis);
+    }
+
+    /**
+     * Builds the table used when no callout heights are configured: every whole foot more
+     * than {@code sensitivity} feet apart, below {@code maxDistance}.
+     */
+    public static CalloutTable forSensitivity(float maxDistance, float sensitivity, float hysteresis) {
+        return evenlySpaced(maxDistance, (float) Math.floor(sensitivity) + 1, hysteresis);
+    }
+
+    private static float parseHeight(String text) {
+        final float height = Float.parseFloat(text.trim());
+        if (!(height >= 0 && height <= MAX_HEIGHT)) {
+            throw new IllegalArgumentException("Callout height out of range: " + text);
+        }
+        return height;
+    }
+
+    private static String formatHeight(float height) {
+        if (height == Math.rint(height)) {
+            return String.format(Locale.US, "%d", (int) height);
+        }
+        return String.format(Locale.US, "%.1f", height);
+    }
+
+    private int quantize(double distance) {
+        // Round up so a callout is never made above its height.
+        return (int) Math.ceil(distance * STEPS_PER_FOOT);
+    }
+
+    /**
+     * Looks up the band for a distance, given the band of the previous sample.
+     *
+     * @param distance Distance to the ground in feet.
+     * @param currentBand Band of the previous sample, or 0 if none.
+     * @return The new band; if it is greater than {@code currentBand}, the aircraft has just
+     *         descended through {@code label(band)}.
+     */
+    public int bandFor(double distance, int currentBand) {
+        int i = (distance <= 0) ? 0 : quantize(distance);
+        if (i >= mBand.length) {
+            i = mBand.length - 1;
+        }
+        final int band = mBand[i];
+        if (band >= currentBand) {
+            return band;
+        }
+        // Climbing: only leave the current band once clear of the hysteresis.
+        final int climbing = mBandClimbing[i];
+        return (climbing < currentBand) ? climbing : currentBand;
+    }
+
+    /**
+     * @return The text to speak for a band, or null for band 0.
+     */
+    public String label(int band) {
+        return mLabels[band];
+    }
+
+    /**
+     * @return The number of callouts, i.e. the highest band number.
+     */
+    public int size() {
+        return mHeights.length;
+    }
+
+    /**
+     * @return The callout height of a band (1 to {@code size()}) in feet.
+     */
+    public float height(int band) {
+        return mHeights[band - 1];
+    }
+}
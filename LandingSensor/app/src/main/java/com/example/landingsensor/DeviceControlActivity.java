@@ -27,7 +27,14 @@ import android.content.ServiceConnection;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.media.AudioManager;
+import android.media.ToneGenerator;
 import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.Menu;
@@ -41,8 +48,9 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.time.Instant;
-import java.util.Date;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
@@ -57,8 +65,11 @@ public class DeviceControlActivity extends AppCompatActivity implements OnInitLi
 
     public static final String EXTRAS_DEVICE_NAME = "DEVICE_NAME";
     public static final String EXTRAS_DEVICE_ADDRESS = "DEVICE_ADDRESS";
+    // Play synthetic samples instead of connecting; see BluetoothLeService.startSimulation().
+    public static final String EXTRAS_SIMULATE = "SIMULATE";
 
     private int MY_DATA_CHECK_CODE = 0;
+    private static final int REQUEST_SELECT_DEVICE = 1;
 
     private TextView mConnectionState;
     private TextView mDistField;
@@ -66,29 +77,50 @@ public class DeviceControlActivity extends AppCompatActivity implements OnInitLi
     private TextView mFluxField;
     private TextView mTextStateField;
     private TextView mStatusField;
+    private TextView mLinkField;
     private Button mTestButton;
     private String mDeviceName;
     private String mDeviceAddress;
     private BluetoothLeService mBluetoothLeService;
     private boolean mConnected = false;
+    private boolean mSimulate = false;
+    private boolean mResumed = false;
     private Menu mMenu;
 
-    private boolean mSpeechActive;
-    private TextToSpeech mTTS;
+    private volatile boolean mSpeechActive;
+    // Null until the voice data check has passed.
+    private volatile TextToSpeech mTTS;
 
     private SharedPreferences mPreferences;
+    private SampleWatchdog mWatchdog;
+    private SessionRecorder mRecorder;
+    private ToneGenerator mToneGenerator;
+    private PhoneSensorFusion mFusion;
+    private volatile boolean mFusionActive = false;
+    // Fused height estimate, or NaN when not fusing or there's no valid estimate.
+    private volatile double mFusedHeight = Double.NaN;
+    private volatile String mFusedHeightText;
 
     // Keep track of prior sensor values
     public static final double DEFAULT_DISTANCE_OFFSET = -1.77;
     public static final double DEFAULT_MAX_REPORTED_DISTANCE = 30.0;
     public static final int DEFAULT_DISTANCE_SENSITIVITY = 2;
     public static final int DEFAULT_REPEAT_INTERVAL = 5;
-    private Instant mLastSpokenDistance;
-    private int lastReportedDistance = 0;
+    // Display and callout rate while fusing, between the sensor's 10Hz samples.
+    private static final long FUSION_TICK_MS = 50;
+    private CalloutPolicy mCalloutPolicy;
     private double distance = 0;
-    private double temp = 0;
-    private int flux = 0;
-    private String status = "";
+    // Cached; it's needed for every sample.
+    private volatile float mDistanceOffset;
+
+    // Callouts and recording each run on their own thread, so that neither can be held up by
+    // the display or by each other.  The watchdog, callout policy, fusion input and the
+    // distance above belong to the speech thread; the recorder to the recorder thread.
+    private final Handler mUiHandler = new Handler(Looper.getMainLooper());
+    private HandlerThread mSpeechThread;
+    private Handler mSpeechHandler;
+    private HandlerThread mRecorderThread;
+    private Handler mRecorderHandler;
 
     // Code to manage Service lifecycle.
     private final ServiceConnection mServiceConnection = new ServiceConnection() {
@@ -100,57 +132,237 @@ public class DeviceControlActivity extends AppCompatActivity implements OnInitLi
                 Log.e(TAG, "Unable to initialize Bluetooth");
                 finish();
             }
+            // Recording continues while the activity is in the background.
+            subscribeRecorder();
+            if (mResumed) {
+                subscribeSamples();
+            }
             // Automatically connects to the device upon successful start-up initialization.
-            mBluetoothLeService.connect(mDeviceAddress);
+            connectDevice();
         }
 
         @Override
         public void onServiceDisconnected(ComponentName componentName) {
+            unsubscribeSamples();
+            unsubscribeRecorder();
             mBluetoothLeService = null;
         }
     };
 
+    // On the speech thread.
     private void handleSpeechHelper() {
         handleSpeechHelper(false);
     }
 
     private void handleSpeechHelper(boolean allow_repeat) {
-        if (!mSpeechActive) {
-            return;
+        // Never announce a height we haven't heard from the sensor recently.
+        final boolean silent = !mSpeechActive || mWatchdog.isStale();
+        final long now = SystemClock.elapsedRealtime();
+        final double height = Double.isNaN(mFusedHeight) ? distance : mFusedHeight;
+        final String callout = allow_repeat
+                ? mCalloutPolicy.onTick(now, silent)
+                : mCalloutPolicy.onSample(height, now, silent);
+        if (callout != null) {
+            speak(callout);
         }
-        // Preferences are live-reloaded
-        final float DISTANCE_SENSITIVITY = Float.parseFloat(mPreferences.getString("edit_text_preference_distance_sensitivity", String.valueOf(DEFAULT_DISTANCE_SENSITIVITY)));
-        final float MAX_REPORTED_DISTANCE = Float.parseFloat(mPreferences.getString("edit_text_preference_max_distance", String.valueOf(DEFAULT_MAX_REPORTED_DISTANCE)));
-        int normDist = Math.max(0, (int)(distance));
-        if (normDist >= MAX_REPORTED_DISTANCE) {
-            return;
+    }
+
+    // Preferences are live-reloaded; the callout table is recompiled whenever they change
+    // rather than parsed per sample.
+    private final SharedPreferences.OnSharedPreferenceChangeListener mPreferenceListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+            if (key.startsWith("edit_text_preference_callout")
+                    || key.equals("edit_text_preference_distance_sensitivity")
+                    || key.equals("edit_text_preference_max_spoken_distance")) {
+                loadCalloutTable();
+            } else if (key.equals("edit_text_preference_distance_offset")) {
+                mDistanceOffset = getDistanceOffset();
+            } else if (key.equals("switch_preference_repeat_enabled")
+                    || key.equals("edit_text_repeat_interval")) {
+                loadRepeatInterval();
+            } else if (key.equals(KnownDevices.PREF_AIRCRAFT) && !mSimulate) {
+                // Each aircraft has its own sensor.
+                switchDevice(KnownDevices.getAddress(prefs), KnownDevices.getName(prefs));
+            }
+        }
+    };
+
+    private void loadRepeatInterval() {
+        final boolean REPEAT_ENABLED = mPreferences.getBoolean("switch_preference_repeat_enabled", false);
+        float repeatInterval = DEFAULT_REPEAT_INTERVAL;
+        try {
+            repeatInterval = Float.parseFloat(mPreferences.getString("edit_text_repeat_interval", String.valueOf(DEFAULT_REPEAT_INTERVAL)));
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Invalid repeat interval, using default: " + e.getMessage());
+        }
+        if (!(repeatInterval > 0)) {
+            repeatInterval = DEFAULT_REPEAT_INTERVAL;
+        }
+        final float REPEAT_INTERVAL = repeatInterval;
+        mSpeechHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mCalloutPolicy.setRepeatIntervalMs(REPEAT_ENABLED ? (long) (REPEAT_INTERVAL * 1000) : 0);
+            }
+        });
+    }
+
+    private void setCalloutTable(final CalloutTable table) {
+        mSpeechHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mCalloutPolicy == null) {
+                    mCalloutPolicy = new CalloutPolicy(table);
+                    mCalloutPolicy.reset(SystemClock.elapsedRealtime());
+                } else {
+                    mCalloutPolicy.setTable(table);
+                }
+            }
+        });
+    }
+
+    private void loadCalloutTable() {
+        float hysteresis = CalloutTable.DEFAULT_HYSTERESIS;
+        try {
+            hysteresis = Float.parseFloat(mPreferences.getString("edit_text_preference_callout_hysteresis", String.valueOf(CalloutTable.DEFAULT_HYSTERESIS)));
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Invalid callout hysteresis, using default: " + e.getMessage());
+        }
+        if (!(hysteresis >= 0 && hysteresis <= CalloutTable.MAX_HEIGHT)) {
+            Log.w(TAG, "Callout hysteresis out of range, using default: " + hysteresis);
+            hysteresis = CalloutTable.DEFAULT_HYSTERESIS;
         }
-        if (allow_repeat || Math.abs(normDist - lastReportedDistance) > DISTANCE_SENSITIVITY) {
-            speak(String.format("%d", normDist));
-            mLastSpokenDistance = (new Date()).toInstant();
-            lastReportedDistance = normDist;
+        final String spec = mPreferences.getString("edit_text_preference_callout_table", "").trim();
+        if (!spec.isEmpty()) {
+            try {
+                final CalloutTable table = CalloutTable.parse(spec, hysteresis);
+                setCalloutTable(table);
+                Log.d(TAG, String.format("Callout table: %s (%d callouts)", spec, table.size()));
+                return;
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Invalid callout table, using spacing settings: " + e.getMessage());
+                Toast.makeText(this, "Invalid callout table: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        }
+        // No table given; fall back to the spacing settings.
+        try {
+            final float DISTANCE_SENSITIVITY = Float.parseFloat(mPreferences.getString("edit_text_preference_distance_sensitivity", String.valueOf(DEFAULT_DISTANCE_SENSITIVITY)));
+            final float MAX_REPORTED_DISTANCE = Float.parseFloat(mPreferences.getString("edit_text_preference_max_spoken_distance", String.valueOf(DEFAULT_MAX_REPORTED_DISTANCE)));
+            setCalloutTable(CalloutTable.forSensitivity(MAX_REPORTED_DISTANCE, DISTANCE_SENSITIVITY, hysteresis));
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Invalid callout spacing, using defaults: " + e.getMessage());
+            Toast.makeText(this, "Invalid callout spacing: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            setCalloutTable(CalloutTable.forSensitivity((float) DEFAULT_MAX_REPORTED_DISTANCE, DEFAULT_DISTANCE_SENSITIVITY, hysteresis));
         }
     }
 
-    private Handler mSpeechHandler = new Handler();
     private Runnable mHandleSpeech = new Runnable() {
         @Override
         public void run() {
-            final boolean REPEAT_ENABLED = mPreferences.getBoolean("switch_preference_repeat_enabled", false);
-            if (REPEAT_ENABLED) {
-                final int REPEAT_INTERVAL = (int)(Float.parseFloat(mPreferences.getString("edit_text_repeat_interval", String.valueOf(DEFAULT_REPEAT_INTERVAL))));
-                Instant now = (new Date()).toInstant();
+            handleSpeechHelper(true);
+            mSpeechHandler.postDelayed(this, CalloutPolicy.TICK_MS);
+        }
+    };
 
-                if (mLastSpokenDistance.plusSeconds(REPEAT_INTERVAL).compareTo(now) < 0) {
-                    handleSpeechHelper(true);
+    // Updates the display and callouts from the fused estimate between sensor samples.
+    private final Runnable mFusionTick = new Runnable() {
+        @Override
+        public void run() {
+            updateFusedHeight();
+            if (!Double.isNaN(mFusedHeight)) {
+                handleSpeechHelper();
+            }
+            mSpeechHandler.postDelayed(this, FUSION_TICK_MS);
+        }
+    };
+
+    // Fusion is started and stopped with the activity, so the preference is read on resume.
+    private void startFusion() {
+        if (mPreferences.getBoolean("switch_preference_fuse_phone_sensors", false)) {
+            mFusionActive = mFusion.start();
+            if (mFusionActive) {
+                mSpeechHandler.post(mFusionTick);
+            }
+        }
+    }
+
+    private void stopFusion() {
+        mFusionActive = false;
+        mSpeechHandler.removeCallbacks(mFusionTick);
+        mFusion.stop();
+        // After any fusion tick already running.
+        mSpeechHandler.post(mClearFusedHeight);
+    }
+
+    private final Runnable mClearFusedHeight = new Runnable() {
+        @Override
+        public void run() {
+            mFusedHeight = Double.NaN;
+        }
+    };
+
+    // On the speech thread.
+    private void updateFusedHeight() {
+        if (!mFusionActive) {
+            return;
+        }
+        mFusedHeight = mFusion.estimateHeight();
+        // While stale, leave the stale reading on display; the pilot has been told the sensor
+        // is lost.
+        if (!Double.isNaN(mFusedHeight) && !mWatchdog.isStale()) {
+            mFusedHeightText = getString(R.string.fused_height, mFusedHeight, mFusion.getVerticalSpeed());
+            runOnUiThread(mShowFusedHeight);
+        }
+    }
+
+    private final Runnable mShowFusedHeight = new Runnable() {
+        @Override
+        public void run() {
+            mDistField.setText(mFusedHeightText);
+        }
+    };
+
+    private final SampleWatchdog.Listener mWatchdogListener = new SampleWatchdog.Listener() {
+        @Override
+        public void onStale() {
+            final String text = getString(R.string.stale_data, distance);
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    mDistField.setText(text);
                 }
-            } else {
-                Log.d(TAG, "repeat_enabled=false, skipping report");
+            });
+        }
+
+        @Override
+        public void onLost() {
+            final TextToSpeech tts = mTTS;
+            if (mSpeechActive && tts != null) {
+                mToneGenerator.startTone(ToneGenerator.TONE_PROP_NACK);
+                tts.speak("sensor lost", TextToSpeech.QUEUE_FLUSH, null);
+            }
+        }
+
+        @Override
+        public void onRecovered(long gapMs, boolean wasLost) {
+            // A gap too short to announce needs no all-clear either.
+            if (mSpeechActive && wasLost) {
+                speak("sensor regained");
             }
-            mSpeechHandler.postDelayed(this, 1000);
         }
     };
 
+    private long getStaleTimeoutMs() {
+        try {
+            return (long) Float.parseFloat(mPreferences.getString("edit_text_preference_stale_timeout", String.valueOf(SampleWatchdog.DEFAULT_TIMEOUT_MS)));
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Invalid stale timeout, using default: " + e.getMessage());
+            return SampleWatchdog.DEFAULT_TIMEOUT_MS;
+        }
+    }
+
     private float getDistanceOffset() {
         return Float.parseFloat(mPreferences.getString("edit_text_preference_distance_offset", String.valueOf(DEFAULT_DISTANCE_OFFSET)));
     }
@@ -168,25 +380,154 @@ public class DeviceControlActivity extends AppCompatActivity implements OnInitLi
                 mConnected = false;
                 updateConnectionState(R.string.disconnected);
                 invalidateOptionsMenu();
+                resetSampleState();
                 clearUI();
             } else if (BluetoothLeService.ACTION_GATT_SERVICES_DISCOVERED.equals(action)) {
                 // Show all the supported services and characteristics on the user interface.
                 subscribeGattServices(mBluetoothLeService.getSupportedGattServices());
-            } else if (BluetoothLeService.ACTION_DATA_AVAILABLE.equals(action)) {
-                distance = (intent.hasExtra(BluetoothLeService.SENSOR_DIST)) ? intent.getDoubleExtra(BluetoothLeService.SENSOR_DIST, 0) - getDistanceOffset() : distance;
-                temp = (intent.hasExtra(BluetoothLeService.SENSOR_TEMP)) ? intent.getDoubleExtra(BluetoothLeService.SENSOR_TEMP, 0) : temp;
-                flux = (intent.hasExtra(BluetoothLeService.SENSOR_FLUX)) ? intent.getIntExtra(BluetoothLeService.SENSOR_FLUX, 0) : flux;
-                status = (intent.hasExtra(BluetoothLeService.SENSOR_STATUS)) ? intent.getStringExtra(BluetoothLeService.SENSOR_STATUS) : status;
-                displayData(
-                        String.format("%.2f ft", distance),
-                        String.format("%.2f C", temp),
-                        String.valueOf(flux),
-                        status);
+                final String aircraft = KnownDevices.getAircraft(mPreferences);
+                final String address = mDeviceAddress;
+                mRecorderHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mRecorder.start(aircraft, address);
+                    }
+                });
+            } else if (BluetoothLeService.ACTION_LINK_UPDATED.equals(action)) {
+                final String mode = intent.getStringExtra(BluetoothLeService.LINK_MODE);
+                final String phy = intent.getStringExtra(BluetoothLeService.LINK_PHY);
+                final double interval = intent.getDoubleExtra(BluetoothLeService.LINK_INTERVAL, Double.NaN);
+                // Some stacks never report the interval.
+                mLinkField.setText(Double.isNaN(interval)
+                        ? getString(R.string.link_summary_no_interval, mode, phy)
+                        : getString(R.string.link_summary, mode, interval, phy,
+                                intent.getDoubleExtra(BluetoothLeService.LINK_LATENCY, Double.NaN)));
+            }
+        }
+    };
+
+    // Each consumer of the sample stream declares how it copes with falling behind, so none of
+    // them can hold up the GATT thread or each other.  Trace sections continue the pipeline from
+    // "LS decode" and "LS publish" in BluetoothLeService; see README for capturing a trace.
+    private static final int AUDIO_BUFFER_SAMPLES = 8;
+    private final List<Closeable> mSampleSubscriptions = new ArrayList<>();
+    // Held for as long as the service is bound, not just while resumed.
+    private Closeable mRecorderSubscription;
+
+    // Display only needs the newest state; samples it was too slow to draw are skipped.
+    private final SampleStream.Listener mDisplayConsumer = new SampleStream.Listener() {
+        @Override
+        public void onSample(Sample sample) {
+            Trace.beginSection("LS display");
+            try {
+                Trace.beginSection("LS format");
+                // While fusing, the speech thread shows the fused height instead.
+                final boolean fused = mFusionActive && !Double.isNaN(mFusedHeight);
+                final String dist = (fused || Double.isNaN(sample.distance)) ? null : String.format("%.2f ft", sample.distance - mDistanceOffset);
+                final String temp = String.format("%.2f C", sample.temp);
+                Trace.endSection();
+                displayData(dist, temp, String.valueOf(sample.flux), sample.status);
+            } finally {
+                Trace.endSection();
+            }
+        }
+    };
+
+    // The session log must have every distance.
+    private final SampleStream.Listener mRecorderConsumer = new SampleStream.Listener() {
+        @Override
+        public void onSample(Sample sample) {
+            if (sample.channel == Sample.DISTANCE) {
+                mRecorder.onDistance(sample.timeMs, sample.distance - mDistanceOffset);
+            }
+        }
+    };
+
+    // Callouts must stay current; if they fall behind, old heights are dropped rather than
+    // announced late.
+    private final SampleStream.Listener mAudioConsumer = new SampleStream.Listener() {
+        @Override
+        public void onSample(Sample sample) {
+            if (sample.channel != Sample.DISTANCE) {
+                return;
+            }
+            Trace.beginSection("LS speech");
+            try {
+                // The sensor only sends distance on a good reading; flux, temp and
+                // status are periodic and don't count as liveness.
+                mWatchdog.onSample();
+                distance = sample.distance - mDistanceOffset;
+                if (mFusionActive) {
+                    // Flux is a periodic report, not per reading, so this is the latest one;
+                    // 0 means we haven't had one yet.
+                    mFusion.onRange(sample.timeMs * 1000000L, distance, (sample.flux > 0) ? sample.flux : -1);
+                    updateFusedHeight();
+                }
                 handleSpeechHelper();
+            } finally {
+                Trace.endSection();
             }
         }
     };
 
+    private void subscribeSamples() {
+        if (mBluetoothLeService == null || !mSampleSubscriptions.isEmpty()) {
+            return;
+        }
+        final SampleStream samples = mBluetoothLeService.getSamples();
+        mSampleSubscriptions.add(samples.subscribe(SampleStream.Policy.LATEST, mUiHandler, mDisplayConsumer));
+        mSampleSubscriptions.add(samples.subscribe(SampleStream.Policy.dropOldest(AUDIO_BUFFER_SAMPLES), mSpeechHandler, mAudioConsumer));
+    }
+
+    private void subscribeRecorder() {
+        if (mBluetoothLeService == null || mRecorderSubscription != null) {
+            return;
+        }
+        mRecorderSubscription = mBluetoothLeService.getSamples()
+                .subscribe(SampleStream.Policy.LOSSLESS, mRecorderHandler, mRecorderConsumer);
+    }
+
+    private void unsubscribeRecorder() {
+        if (mRecorderSubscription == null) {
+            return;
+        }
+        try {
+            mRecorderSubscription.close();
+        } catch (IOException e) {
+            // Cancelling a subscription doesn't do I/O.
+        }
+        mRecorderSubscription = null;
+    }
+
+    // Ends the session and forgets the last sensor's state, e.g. on disconnect.
+    private void resetSampleState() {
+        mSpeechHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mWatchdog.stop();
+                mFusion.reset();
+                mFusedHeight = Double.NaN;
+            }
+        });
+        mRecorderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mRecorder.stop();
+            }
+        });
+    }
+
+    private void unsubscribeSamples() {
+        for (Closeable subscription : mSampleSubscriptions) {
+            try {
+                subscription.close();
+            } catch (IOException e) {
+                // Cancelling a subscription doesn't do I/O.
+            }
+        }
+        mSampleSubscriptions.clear();
+    }
+
     private void subscribeCharacteristic(BluetoothGattCharacteristic characteristic) {
         final int charaProp = characteristic.getProperties();
         if ((charaProp | BluetoothGattCharacteristic.PROPERTY_READ) > 0) {
@@ -205,6 +546,7 @@ public class DeviceControlActivity extends AppCompatActivity implements OnInitLi
         mTempField.setText(R.string.no_data);
         mFluxField.setText(R.string.no_data);
         mStatusField.setText(R.string.no_data);
+        mLinkField.setText(R.string.n_a);
         mTextStateField.setText(R.string.n_a);
     }
 
@@ -219,58 +561,142 @@ public class DeviceControlActivity extends AppCompatActivity implements OnInitLi
         Intent checkTTSIntent = new Intent();
         checkTTSIntent.setAction(TextToSpeech.Engine.ACTION_CHECK_TTS_DATA);
         startActivityForResult(checkTTSIntent, MY_DATA_CHECK_CODE);
-        mLastSpokenDistance = (new Date()).toInstant();
+
+        mSpeechThread = new HandlerThread("Speech", Process.THREAD_PRIORITY_URGENT_AUDIO);
+        mSpeechThread.start();
+        mSpeechHandler = new Handler(mSpeechThread.getLooper());
+        mRecorderThread = new HandlerThread("Recorder", Process.THREAD_PRIORITY_BACKGROUND);
+        mRecorderThread.start();
+        mRecorderHandler = new Handler(mRecorderThread.getLooper());
 
         mSpeechActive = mPreferences.getBoolean("switch_preference_start_with_voice_enabled", false);
+        loadCalloutTable();
+        loadRepeatInterval();
+        mPreferences.registerOnSharedPreferenceChangeListener(mPreferenceListener);
+        mWatchdog = new SampleWatchdog(mSpeechHandler, mWatchdogListener);
+        mRecorder = new SessionRecorder(this);
+        mFusion = new PhoneSensorFusion(this);
+        mToneGenerator = new ToneGenerator(AudioManager.STREAM_MUSIC, ToneGenerator.MAX_VOLUME);
 
         setContentView(R.layout.gatt_services_characteristics);
 
         final Intent intent = getIntent();
         mDeviceName = intent.getStringExtra(EXTRAS_DEVICE_NAME);
         mDeviceAddress = intent.getStringExtra(EXTRAS_DEVICE_ADDRESS);
+        mSimulate = BuildConfig.SIMULATION_ENABLED && intent.getBooleanExtra(EXTRAS_SIMULATE, false);
 
-        if (mDeviceName == null) {
-            mDeviceName = GattAttributes.LANDING_SENSOR_NAME;
-        }
         if (mDeviceAddress == null) {
-            mDeviceAddress = GattAttributes.LANDING_SENSOR_UUID;
+            // Fall back to the sensor remembered for this aircraft.
+            mDeviceAddress = KnownDevices.getAddress(mPreferences);
+            mDeviceName = KnownDevices.getName(mPreferences);
         }
 
         // Sets up UI references.
-        ((TextView) findViewById(R.id.device_address)).setText(mDeviceAddress);
+        ((TextView) findViewById(R.id.device_address)).setText(
+                (mDeviceAddress != null) ? mDeviceAddress : getString(R.string.n_a));
         mConnectionState = findViewById(R.id.state_value);
         mDistField = findViewById(R.id.dist_value);
         mTempField = findViewById(R.id.temp_value);
         mFluxField = findViewById(R.id.flux_value);
         mTextStateField = findViewById(R.id.text_state_value);
         mStatusField = findViewById(R.id.status_value);
+        mLinkField = findViewById(R.id.link_value);
         setUISpeechActive();
 
 
+        // Registered for the life of the activity, so sessions are started and ended while it's
+        // in the background too.
+        registerReceiver(mGattUpdateReceiver, makeGattUpdateIntentFilter());
         Intent gattServiceIntent = new Intent(this, BluetoothLeService.class);
         bindService(gattServiceIntent, mServiceConnection, BIND_AUTO_CREATE);
 
         mTestButton = findViewById(R.id.test_height_inc);
         mTestButton.setOnClickListener(new View.OnClickListener() {
             public void onClick(View v) {
-                distance += 1.0;
-                Log.d(TAG, "Inc distance: " + distance);
-                mDistField.setText(String.format("%.2f ft", distance));
-                handleSpeechHelper();
+                stepTestHeight(1.0);
             }
         });
 
         mTestButton = findViewById(R.id.test_height_dec);
         mTestButton.setOnClickListener(new View.OnClickListener() {
             public void onClick(View v) {
-                distance = Math.max(0, distance - 1.0);
-                Log.d(TAG, "Dec distance: " + distance);
-                mDistField.setText(String.format("%.2f ft", distance));
+                stepTestHeight(-1.0);
+            }
+        });
+
+        mDistanceOffset = getDistanceOffset();
+        Log.d(TAG, "Distance offset: " + mDistanceOffset);
+
+        if (mDeviceAddress == null && !mSimulate) {
+            // No sensor known for this aircraft yet; let the user pick one.
+            chooseDevice();
+        }
+    }
+
+    private void stepTestHeight(final double step) {
+        mSpeechHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                distance = Math.max(0, distance + step);
+                Log.d(TAG, "Test distance: " + distance);
+                final String text = String.format("%.2f ft", distance);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        mDistField.setText(text);
+                    }
+                });
                 handleSpeechHelper();
             }
         });
+    }
 
-        Log.d(TAG, "Distance offset: " + getDistanceOffset());
+    /**
+     * Moves to another sensor, or to none, in which case the user is asked to pick one.
+     */
+    private void switchDevice(String address, String name) {
+        if (address != null && address.equals(mDeviceAddress)) {
+            return;
+        }
+        if (mConnected) {
+            // autoConnect() drops the old sensor's connection without a callback.
+            mConnected = false;
+            invalidateOptionsMenu();
+            resetSampleState();
+            clearUI();
+        }
+        mDeviceName = name;
+        mDeviceAddress = address;
+        ((TextView) findViewById(R.id.device_address)).setText(
+                (mDeviceAddress != null) ? mDeviceAddress : getString(R.string.n_a));
+        if (mDeviceAddress == null) {
+            if (mBluetoothLeService != null) {
+                mBluetoothLeService.disconnect();
+            }
+            updateConnectionState(R.string.disconnected);
+            chooseDevice();
+        } else {
+            connectDevice();
+        }
+    }
+
+    private void chooseDevice() {
+        startActivityForResult(new Intent(this, DeviceScanActivity.class), REQUEST_SELECT_DEVICE);
+    }
+
+    private void connectDevice() {
+        if (mBluetoothLeService != null && mSimulate) {
+            mBluetoothLeService.startSimulation();
+            return;
+        }
+        if (mBluetoothLeService == null || mDeviceAddress == null) {
+            return;
+        }
+        final boolean result = mBluetoothLeService.autoConnect(mDeviceAddress);
+        Log.d(TAG, "Connect request result=" + result);
+        if (result && !mConnected) {
+            updateConnectionState(R.string.waiting_for_device);
+        }
     }
 
     public void onInit(int initStatus) {
@@ -285,12 +711,19 @@ public class DeviceControlActivity extends AppCompatActivity implements OnInitLi
     }
 
     private void speak(String speech) {
-        mTTS.speak(speech, TextToSpeech.QUEUE_ADD, null);
+        final TextToSpeech tts = mTTS;
+        if (tts != null) {
+            tts.speak(speech, TextToSpeech.QUEUE_ADD, null);
+        }
     }
 
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
-        if (requestCode == MY_DATA_CHECK_CODE) {
+        if (requestCode == REQUEST_SELECT_DEVICE) {
+            if (resultCode == RESULT_OK && data != null) {
+                switchDevice(data.getStringExtra(EXTRAS_DEVICE_ADDRESS), data.getStringExtra(EXTRAS_DEVICE_NAME));
+            }
+        } else if (requestCode == MY_DATA_CHECK_CODE) {
             if (resultCode == TextToSpeech.Engine.CHECK_VOICE_DATA_PASS) {
                 mTTS = new TextToSpeech(this, this);
             }
@@ -306,29 +739,62 @@ public class DeviceControlActivity extends AppCompatActivity implements OnInitLi
     protected void onResume() {
         super.onResume();
 
-        registerReceiver(mGattUpdateReceiver, makeGattUpdateIntentFilter());
+        mResumed = true;
+        subscribeSamples();
+        final long staleTimeoutMs = getStaleTimeoutMs();
+        mSpeechHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mWatchdog.setTimeoutMs(staleTimeoutMs);
+            }
+        });
         if (mBluetoothLeService != null) {
             mBluetoothLeService.initialize();
-            final boolean result = mBluetoothLeService.connect(mDeviceAddress);
-            Log.d(TAG, "Connect request result=" + result);
+            connectDevice();
         }
         mSpeechHandler.post(mHandleSpeech);
+        startFusion();
     }
 
+    private final Runnable mStopWatchdog = new Runnable() {
+        @Override
+        public void run() {
+            mWatchdog.stop();
+        }
+    };
+
     @Override
     protected void onPause() {
         super.onPause();
-        unregisterReceiver(mGattUpdateReceiver);
+        mResumed = false;
+        unsubscribeSamples();
         mSpeechHandler.removeCallbacks(mHandleSpeech);
+        // No samples are received while paused, so don't report that as a sensor loss.
+        mSpeechHandler.post(mStopWatchdog);
+        stopFusion();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        mPreferences.unregisterOnSharedPreferenceChangeListener(mPreferenceListener);
+        unregisterReceiver(mGattUpdateReceiver);
+        unsubscribeRecorder();
+        mRecorderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mRecorder.close();
+            }
+        });
+        mRecorderThread.quitSafely();
+        mSpeechThread.quit();
         unbindService(mServiceConnection);
         mBluetoothLeService = null;
-        mTTS.stop();
-        mTTS.shutdown();
+        if (mTTS != null) {
+            mTTS.stop();
+            mTTS.shutdown();
+        }
+        mToneGenerator.release();
     }
 
     @Override
@@ -350,7 +816,11 @@ public class DeviceControlActivity extends AppCompatActivity implements OnInitLi
     public boolean onOptionsItemSelected(MenuItem item) {
         switch(item.getItemId()) {
             case R.id.menu_connect:
-                mBluetoothLeService.connect(mDeviceAddress);
+                if (mDeviceAddress == null) {
+                    chooseDevice();
+                } else {
+                    connectDevice();
+                }
                 return true;
             case R.id.menu_disconnect:
                 mBluetoothLeService.disconnect();
@@ -367,6 +837,12 @@ public class DeviceControlActivity extends AppCompatActivity implements OnInitLi
                 speak("audible height on");
                 updateMenuState();
                 return true;
+            case R.id.menu_choose_device:
+                chooseDevice();
+                return true;
+            case R.id.menu_history:
+                startActivity(new Intent(this, HistoryActivity.class));
+                return true;
             case R.id.menu_settings:
                 Intent intent = new Intent(this, SettingsActivity.class);
                 startActivity(intent);
@@ -433,7 +909,7 @@ public class DeviceControlActivity extends AppCompatActivity implements OnInitLi
         intentFilter.addAction(BluetoothLeService.ACTION_GATT_CONNECTED);
         intentFilter.addAction(BluetoothLeService.ACTION_GATT_DISCONNECTED);
         intentFilter.addAction(BluetoothLeService.ACTION_GATT_SERVICES_DISCOVERED);
-        intentFilter.addAction(BluetoothLeService.ACTION_DATA_AVAILABLE);
+        intentFilter.addAction(BluetoothLeService.ACTION_LINK_UPDATED);
         return intentFilter;
     }
 }
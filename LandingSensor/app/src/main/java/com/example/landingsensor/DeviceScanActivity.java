@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.landingsensor;
+
+import android.Manifest;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothManager;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.ParcelUuid;
+import android.preference.PreferenceManager;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Activity for scanning and displaying available landing sensors.  Scanning is filtered in
+ * the controller to advertisements carrying {@code GattAttributes.SENSOR_SERVICE}, and devices
+ * are listed strongest signal first.  The chosen device is remembered for the current aircraft
+ * and returned to the caller.
+ */
+public class DeviceScanActivity extends AppCompatActivity {
+    private final static String TAG = DeviceScanActivity.class.getSimpleName();
+
+    private static final int REQUEST_ENABLE_BT = 1;
+    private static final int REQUEST_LOCATION_PERMISSION = 2;
+    // Stops scanning after 10 seconds.
+    private static final long SCAN_PERIOD = 10000;
+
+    private LeDeviceListAdapter mLeDeviceListAdapter;
+    private BluetoothAdapter mBluetoothAdapter;
+    private BluetoothLeScanner mScanner;
+    private boolean mScanning;
+    private Handler mHandler;
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        getSupportActionBar().setTitle(R.string.title_devices);
+        setContentView(R.layout.device_scan);
+        mHandler = new Handler();
+
+        if (!getPackageManager().hasSystemFeature(PackageManager.FEATURE_BLUETOOTH_LE)) {
+            Toast.makeText(this, R.string.ble_not_supported, Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+
+        final BluetoothManager bluetoothManager =
+                (BluetoothManager) getSystemService(Context.BLUETOOTH_SERVICE);
+        mBluetoothAdapter = bluetoothManager.getAdapter();
+        if (mBluetoothAdapter == null) {
+            Toast.makeText(this, R.string.error_bluetooth_not_supported, Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+
+        ListView listView = findViewById(R.id.device_list);
+        mLeDeviceListAdapter = new LeDeviceListAdapter();
+        listView.setAdapter(mLeDeviceListAdapter);
+        listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                onDeviceSelected(position);
+            }
+        });
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.main, menu);
+        if (!mScanning) {
+            menu.findItem(R.id.menu_stop).setVisible(false);
+            menu.findItem(R.id.menu_scan).setVisible(true);
+            menu.findItem(R.id.menu_refresh).setActionView(null);
+        } else {
+            menu.findItem(R.id.menu_stop).setVisible(true);
+            menu.findItem(R.id.menu_scan).setVisible(false);
+            menu.findItem(R.id.menu_refresh).setActionView(
+                    R.layout.actionbar_indeterminate_progress);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case R.id.menu_scan:
+                mLeDeviceListAdapter.clear();
+                scanLeDevice(true);
+                return true;
+            case R.id.menu_stop:
+                scanLeDevice(false);
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        // Ensures Bluetooth is enabled on the device.  If Bluetooth is not currently enabled,
+        // fire an intent to display a dialog asking the user to grant permission to enable it.
+        if (!mBluetoothAdapter.isEnabled()) {
+            Intent enableBtIntent = new Intent(BluetoothAdapter.ACTION_REQUEST_ENABLE);
+            startActivityForResult(enableBtIntent, REQUEST_ENABLE_BT);
+            return;
+        }
+        // BLE scan results are only delivered with location permission.
+        if (checkSelfPermission(Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            requestPermissions(new String[]{Manifest.permission.ACCESS_FINE_LOCATION},
+                    REQUEST_LOCATION_PERMISSION);
+            return;
+        }
+        scanLeDevice(true);
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        // User chose not to enable Bluetooth.
+        if (requestCode == REQUEST_ENABLE_BT && resultCode == RESULT_CANCELED) {
+            finish();
+            return;
+        }
+        super.onActivityResult(requestCode, resultCode, data);
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        if (requestCode == REQUEST_LOCATION_PERMISSION
+                && (grantResults.length == 0 || grantResults[0] != PackageManager.PERMISSION_GRANTED)) {
+            Toast.makeText(this, R.string.location_permission_required, Toast.LENGTH_LONG).show();
+            finish();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        scanLeDevice(false);
+        mLeDeviceListAdapter.clear();
+    }
+
+    private void onDeviceSelected(int position) {
+        final DeviceEntry entry = mLeDeviceListAdapter.getItem(position);
+        if (entry == null) return;
+        scanLeDevice(false);
+        final String name = entry.device.getName();
+        KnownDevices.remember(PreferenceManager.getDefaultSharedPreferences(getApplicationContext()),
+                entry.device.getAddress(), name);
+        final Intent result = new Intent();
+        result.putExtra(DeviceControlActivity.EXTRAS_DEVICE_NAME, name);
+        result.putExtra(DeviceControlActivity.EXTRAS_DEVICE_ADDRESS, entry.device.getAddress());
+        setResult(RESULT_OK, result);
+        finish();
+    }
+
+    private void scanLeDevice(final boolean enable) {
+        if (mScanner == null) {
+            mScanner = mBluetoothAdapter.getBluetoothLeScanner();
+            if (mScanner == null) {
+                // Bluetooth is off.
+                return;
+            }
+        }
+        if (enable) {
+            if (mScanning) return;
+            // Stops scanning after a pre-defined scan period.
+            mHandler.postDelayed(mStopScan, SCAN_PERIOD);
+            mScanning = true;
+            mScanner.startScan(makeSensorScanFilters(null),
+                    new ScanSettings.Builder().setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY).build(),
+                    mScanCallback);
+        } else {
+            mHandler.removeCallbacks(mStopScan);
+            if (mScanning) {
+                mScanning = false;
+                mScanner.stopScan(mScanCallback);
+            }
+        }
+        invalidateOptionsMenu();
+    }
+
+    private final Runnable mStopScan = new Runnable() {
+        @Override
+        public void run() {
+            scanLeDevice(false);
+        }
+    };
+
+    /**
+     * Builds controller-side scan filters matching landing sensors only, optionally narrowed to
+     * a single device address.
+     */
+    static List<ScanFilter> makeSensorScanFilters(String address) {
+        final ScanFilter.Builder builder = new ScanFilter.Builder()
+                .setServiceUuid(ParcelUuid.fromString(GattAttributes.SENSOR_SERVICE));
+        if (address != null) {
+            builder.setDeviceAddress(address);
+        }
+        return Collections.singletonList(builder.build());
+    }
+
+    // Device scan callback.
+    private final ScanCallback mScanCallback = new ScanCallback() {
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            mLeDeviceListAdapter.update(result.getDevice(), result.getRssi());
+        }
+
+        @Override
+        public void onBatchScanResults(List<ScanResult> results) {
+            for (ScanResult result : results) {
+                mLeDeviceListAdapter.update(result.getDevice(), result.getRssi());
+            }
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            Log.w(TAG, "Scan failed: " + errorCode);
+            mScanning = false;
+            invalidateOptionsMenu();
+        }
+    };
+
+    private static class DeviceEntry {
+        final BluetoothDevice device;
+        int rssi;
+
+        DeviceEntry(BluetoothDevice device, int rssi) {
+            this.device = device;
+            this.rssi = rssi;
+        }
+    }
+
+    // Adapter for holding devices found through scanning, strongest signal first.
+    private class LeDeviceListAdapter extends BaseAdapter {
+        private final ArrayList<DeviceEntry> mLeDevices = new ArrayList<>();
+        private final LayoutInflater mInflator = DeviceScanActivity.this.getLayoutInflater();
+
+        void update(BluetoothDevice device, int rssi) {
+            DeviceEntry entry = null;
+            for (DeviceEntry e : mLeDevices) {
+                if (e.device.equals(device)) {
+                    entry = e;
+                    break;
+                }
+            }
+            if (entry == null) {
+                mLeDevices.add(new DeviceEntry(device, rssi));
+            } else {
+                entry.rssi = rssi;
+            }
+            Collections.sort(mLeDevices, new Comparator<DeviceEntry>() {
+                @Override
+                public int compare(DeviceEntry a, DeviceEntry b) {
+                    return Integer.compare(b.rssi, a.rssi);
+                }
+            });
+            notifyDataSetChanged();
+        }
+
+        void clear() {
+            mLeDevices.clear();
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public int getCount() {
+            return mLeDevices.size();
+        }
+
+        @Override
+        public DeviceEntry getItem(int i) {
+            return mLeDevices.get(i);
+        }
+
+        @Override
+        public long getItemId(int i) {
+            return i;
+        }
+
+        @Override
+        public View getView(int i, View view, ViewGroup viewGroup) {
+            ViewHolder viewHolder;
+            // General ListView optimization code.
+            if (view == null) {
+                view = mInflator.inflate(R.layout.listitem_device, null);
+                viewHolder = new ViewHolder();
+                viewHolder.deviceAddress = view.findViewById(R.id.device_address);
+                viewHolder.deviceName = view.findViewById(R.id.device_name);
+                view.setTag(viewHolder);
+            } else {
+                viewHolder = (ViewHolder) view.getTag();
+            }
+
+            final DeviceEntry entry = mLeDevices.get(i);
+            final String deviceName = entry.device.getName();
+            if (deviceName != null && deviceName.length() > 0)
+                viewHolder.deviceName.setText(deviceName);
+            else
+                viewHolder.deviceName.setText(R.string.unknown_device);
+            viewHolder.deviceAddress.setText(
+                    String.format("%s  (%d dBm)", entry.device.getAddress(), entry.rssi));
+
+            return view;
+        }
+    }
+
+    static class ViewHolder {
+        TextView deviceName;
+        TextView deviceAddress;
+    }
+}
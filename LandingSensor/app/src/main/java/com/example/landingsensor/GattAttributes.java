@@ -22,7 +22,6 @@ import java.util.HashMap;
  * This class includes a small subset of standard GATT attributes for demonstration purposes.
  */
 public class GattAttributes {
-    static final String LANDING_SENSOR_UUID = "24:0A:C4:9C:B7:FE";
     static final String LANDING_SENSOR_NAME = "Landing Sensor";
     private static HashMap<String, String> attributes = new HashMap();
     public static final String CLIENT_CHARACTERISTIC_CONFIG = "00002902-0000-1000-8000-00805f9b34fb";
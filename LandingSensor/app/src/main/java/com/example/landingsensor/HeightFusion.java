@@ -0,0 +1,261 @@
+package com.example.landingsensor;
+
+/**
+ * Fuses the rangefinder with the phone's accelerometer and barometer into a continuous
+ * estimate of height above ground and vertical speed.
+ *
+ * A two state (height, vertical speed) Kalman filter is driven by vertical acceleration and
+ * corrected by rangefinder samples, which are weighted by their signal strength.  The
+ * barometer is calibrated against the rangefinder while it has a good return, and then holds
+ * the estimate through dropouts and above the sensor's range.
+ *
+ * Phone sensor readings arrive in batches, later than the rangefinder samples they overlap.
+ * Rangefinder samples are therefore held until the accelerometer catches up to them, so that
+ * all inputs are applied in time order.  {@code estimate()} extrapolates past the held samples
+ * to the present.
+ *
+ * Not thread safe.  Times are in ns, on the {@code SystemClock.elapsedRealtimeNanos()} base
+ * used by {@code SensorEvent.timestamp}.  Heights are in feet.
+ */
+public class HeightFusion {
+    public static final double FT_PER_M = 3.28084;
+    // TFMini Plus readings are unreliable below this flux and meaningless at max range.
+    public static final int MIN_FLUX = 100;
+    public static final double MAX_RANGE_FT = 39.0;
+    // Rangefinder variance at REFERENCE_FLUX, in ft^2; weaker returns are trusted less.
+    private static final double RANGE_VARIANCE = 0.05;
+    private static final double REFERENCE_FLUX = 1000;
+    private static final double BARO_VARIANCE = 4.0;
+    // Accelerometer noise, in (ft/s^2)^2.
+    private static final double ACCEL_VARIANCE = 4.0;
+    // Time constant over which the barometer offset follows the rangefinder.
+    private static final double BARO_OFFSET_TAU_S = 10.0;
+    // Hold rangefinder samples at most this long waiting for phone sensor data.
+    public static final long MAX_HOLD_NS = 500000000L;
+    // Estimates less certain than this are reported as invalid.
+    private static final double MAX_VALID_SIGMA_FT = 2.0;
+    private static final int MAX_PENDING = 32;
+
+    private static class State {
+        boolean initialized;
+        long time;
+        double height;
+        double speed;
+        // Covariance [[p00, p01], [p01, p11]].
+        double p00, p01, p11;
+
+        void copyFrom(State other) {
+            initialized = other.initialized;
+            time = other.time;
+            height = other.height;
+            speed = other.speed;
+            p00 = other.p00;
+            p01 = other.p01;
+            p11 = other.p11;
+        }
+
+        void predict(long to, double accel) {
+            if (!initialized || to <= time) {
+                return;
+            }
+            final double dt = (to - time) / 1e9;
+            height += speed * dt + 0.5 * accel * dt * dt;
+            speed += accel * dt;
+            final double dt2 = dt * dt;
+            final double n00 = p00 + dt * (2 * p01 + dt * p11) + ACCEL_VARIANCE * dt2 * dt2 / 4;
+            final double n01 = p01 + dt * p11 + ACCEL_VARIANCE * dt2 * dt / 2;
+            p11 += ACCEL_VARIANCE * dt2;
+            p00 = n00;
+            p01 = n01;
+            time = to;
+        }
+
+        void updateHeight(double measured, double variance) {
+            final double s = p00 + variance;
+            final double k0 = p00 / s;
+            final double k1 = p01 / s;
+            final double innovation = measured - height;
+            height += k0 * innovation;
+            speed += k1 * innovation;
+            final double n11 = p11 - k1 * p01;
+            final double n01 = p01 - k0 * p01;
+            p00 = p00 - k0 * p00;
+            p01 = n01;
+            p11 = n11;
+        }
+    }
+
+    private final State mState = new State();
+    private final State mScratch = new State();
+    private double mAccel;
+    // Latest time the accelerometer has reported up to.
+    private long mAccelTime = Long.MIN_VALUE;
+
+    // Rangefinder samples waiting for the accelerometer to catch up, oldest first.
+    private final long[] mPendingTime = new long[MAX_PENDING];
+    private final double[] mPendingHeight = new double[MAX_PENDING];
+    private final double[] mPendingVariance = new double[MAX_PENDING];
+    private int mPendingStart;
+    private int mPendingCount;
+
+    private double mBaroOffset;
+    private boolean mBaroCalibrated;
+    private long mBaroTime;
+
+    /**
+     * @param time Time of the reading.
+     * @param verticalAccel Acceleration upwards, excluding gravity, in ft/s^2.
+     */
+    public void onAcceleration(long time, double verticalAccel) {
+        applyPendingUpTo(time);
+        mState.predict(time, mAccel);
+        mAccel = verticalAccel;
+        mAccelTime = Math.max(mAccelTime, time);
+    }
+
+    /**
+     * @param time Time of the reading.
+     * @param altitude Pressure altitude in feet.
+     */
+    public void onPressureAltitude(long time, double altitude) {
+        if (!mState.initialized) {
+            return;
+        }
+        applyPendingUpTo(time);
+        mState.predict(time, mAccel);
+        if (mBaroCalibrated) {
+            mState.updateHeight(altitude - mBaroOffset, BARO_VARIANCE);
+        }
+        // Only calibrate against the barometer while the rangefinder has recently been good.
+        if (mState.p00 < RANGE_VARIANCE * 10) {
+            final double offset = altitude - mState.height;
+            if (!mBaroCalibrated) {
+                mBaroOffset = offset;
+                mBaroCalibrated = true;
+            } else {
+                final double dt = Math.max(0, (time - mBaroTime) / 1e9);
+                mBaroOffset += (offset - mBaroOffset) * dt / (dt + BARO_OFFSET_TAU_S);
+            }
+        }
+        mBaroTime = time;
+    }
+
+    /**
+     * @param time Time of the sample.
+     * @param height Rangefinder distance to the ground, with offset applied.
+     * @param flux Signal strength of the return, or of the latest periodic flux report, or -1
+     *             if unknown.
+     */
+    public void onRange(long time, double height, int flux) {
+        if (flux >= 0 && flux < MIN_FLUX) {
+            return;
+        }
+        if (height >= MAX_RANGE_FT) {
+            return;
+        }
+        final double variance = (flux > 0)
+                ? RANGE_VARIANCE * Math.max(1.0, REFERENCE_FLUX / flux) : RANGE_VARIANCE * 4;
+        if (!mState.initialized) {
+            mState.initialized = true;
+            mState.time = time;
+            mState.height = height;
+            mState.speed = 0;
+            mState.p00 = variance;
+            mState.p01 = 0;
+            mState.p11 = 25;
+            return;
+        }
+        if (mPendingCount == MAX_PENDING) {
+            // Phone sensors have stalled; don't wait for them any longer.
+            applyPending();
+        }
+        final int i = (mPendingStart + mPendingCount) % MAX_PENDING;
+        mPendingTime[i] = time;
+        mPendingHeight[i] = height;
+        mPendingVariance[i] = variance;
+        mPendingCount++;
+        // Apply straight away if the accelerometer is already past this sample, or if there's
+        // no recent accelerometer data to wait for.
+        if (mAccelTime == Long.MIN_VALUE || time <= mAccelTime || time - mAccelTime > MAX_HOLD_NS) {
+            applyPending();
+        }
+    }
+
+    private void applyPendingUpTo(long time) {
+        while (mPendingCount > 0 && mPendingTime[mPendingStart] <= time) {
+            applyOldestPending(mState);
+            mPendingStart = (mPendingStart + 1) % MAX_PENDING;
+            mPendingCount--;
+        }
+    }
+
+    private void applyPending() {
+        applyPendingUpTo(Long.MAX_VALUE);
+    }
+
+    private void applyOldestPending(State state) {
+        state.predict(mPendingTime[mPendingStart], mAccel);
+        state.updateHeight(mPendingHeight[mPendingStart], mPendingVariance[mPendingStart]);
+    }
+
+    /**
+     * Estimates the state at {@code time}, including any held rangefinder samples, without
+     * disturbing the filter.
+     *
+     * @return False if there is no valid estimate; otherwise {@code getHeight()} and
+     *         {@code getVerticalSpeed()} return the estimate.
+     */
+    public boolean estimate(long time) {
+        mScratch.copyFrom(mState);
+        for (int n = 0; n < mPendingCount; n++) {
+            final int i = (mPendingStart + n) % MAX_PENDING;
+            mScratch.predict(mPendingTime[i], mAccel);
+            mScratch.updateHeight(mPendingHeight[i], mPendingVariance[i]);
+        }
+        mScratch.predict(time, mAccel);
+        return mScratch.initialized && Math.sqrt(mScratch.p00) <= MAX_VALID_SIGMA_FT;
+    }
+
+    /**
+     * @return Height above ground from the last {@code estimate()}.
+     */
+    public double getHeight() {
+        return mScratch.height;
+    }
+
+    /**
+     * @return Vertical speed (positive up) in ft/s from the last {@code estimate()}.
+     */
+    public double getVerticalSpeed() {
+        return mScratch.speed;
+    }
+
+    /**
+     * @return Standard deviation of the height from the last {@code estimate()}.
+     */
+    public double getHeightSigma() {
+        return Math.sqrt(mScratch.p00);
+    }
+
+    /**
+     * Forgets everything, e.g. on disconnect.
+     */
+    public void reset() {
+        mState.initialized = false;
+        mScratch.initialized = false;
+        mPendingCount = 0;
+        mBaroCalibrated = false;
+        mAccelTime = Long.MIN_VALUE;
+        mAccel = 0;
+    }
+
+    /**
+     * Converts a barometer reading to pressure altitude.
+     *
+     * @param pressure Pressure in hPa.
+     * @return Pressure altitude in feet.
+     */
+    public static double pressureAltitude(double pressure) {
+        return 44330.0 * (1.0 - Math.pow(pressure / 1013.25, 1.0 / 5.255)) * FT_PER_M;
+    }
+}
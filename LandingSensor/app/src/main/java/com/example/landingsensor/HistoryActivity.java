@@ -0,0 +1,160 @@
+package com.example.landingsensor;
+
+import android.database.Cursor;
+import android.os.Bundle;
+import android.text.format.DateUtils;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ListView;
+import android.widget.SimpleCursorAdapter;
+import android.widget.TextView;
+
+import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Lists recorded sessions from the {@code SessionCatalog}, newest first, and shows the
+ * approach summaries of a session when it is tapped.
+ */
+public class HistoryActivity extends AppCompatActivity {
+    private SessionCatalog mCatalog;
+    private SimpleCursorAdapter mAdapter;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        getSupportActionBar().setTitle(R.string.title_history);
+        setContentView(R.layout.history);
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setDisplayHomeAsUpEnabled(true);
+        }
+
+        mCatalog = new SessionCatalog(this);
+        mAdapter = new SimpleCursorAdapter(this, R.layout.listitem_session, null,
+                new String[]{SessionCatalog.COLUMN_START_TIME, SessionCatalog.COLUMN_APPROACH_COUNT},
+                new int[]{R.id.session_time, R.id.session_summary}, 0);
+        mAdapter.setViewBinder(new SimpleCursorAdapter.ViewBinder() {
+            @Override
+            public boolean setViewValue(View view, Cursor cursor, int columnIndex) {
+                if (view.getId() == R.id.session_time) {
+                    ((TextView) view).setText(DateUtils.formatDateTime(HistoryActivity.this,
+                            cursor.getLong(columnIndex),
+                            DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_SHOW_TIME | DateUtils.FORMAT_SHOW_YEAR));
+                } else {
+                    final long start = cursor.getLong(cursor.getColumnIndexOrThrow(SessionCatalog.COLUMN_START_TIME));
+                    final long end = cursor.getLong(cursor.getColumnIndexOrThrow(SessionCatalog.COLUMN_END_TIME));
+                    ((TextView) view).setText(getString(R.string.session_summary,
+                            cursor.getString(cursor.getColumnIndexOrThrow(SessionCatalog.COLUMN_AIRCRAFT)),
+                            cursor.getInt(columnIndex),
+                            cursor.getInt(cursor.getColumnIndexOrThrow(SessionCatalog.COLUMN_LANDING_COUNT)),
+                            (end > start) ? DateUtils.formatElapsedTime((end - start) / 1000) : "-"));
+                }
+                return true;
+            }
+        });
+
+        final ListView listView = findViewById(R.id.session_list);
+        listView.setEmptyView(findViewById(R.id.session_empty));
+        listView.setAdapter(mAdapter);
+        listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                showApproaches(id);
+            }
+        });
+
+        loadSessions();
+    }
+
+    private void loadSessions() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Cursor cursor = mCatalog.querySessions();
+                // Force the query to run off the main thread.
+                cursor.getCount();
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isDestroyed()) {
+                            cursor.close();
+                            return;
+                        }
+                        final Cursor old = mAdapter.swapCursor(cursor);
+                        if (old != null) old.close();
+                    }
+                });
+            }
+        });
+    }
+
+    private void showApproaches(final long sessionId) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final StringBuilder text = new StringBuilder();
+                try (Cursor c = mCatalog.queryApproaches(sessionId)) {
+                    final int minHeight = c.getColumnIndexOrThrow(SessionCatalog.COLUMN_MIN_HEIGHT);
+                    final int sinkRate = c.getColumnIndexOrThrow(SessionCatalog.COLUMN_TOUCHDOWN_SINK_RATE);
+                    final int finalMs = c.getColumnIndexOrThrow(SessionCatalog.COLUMN_FINAL_MS);
+                    final int samples = c.getColumnIndexOrThrow(SessionCatalog.COLUMN_SAMPLE_COUNT);
+                    final int lost = c.getColumnIndexOrThrow(SessionCatalog.COLUMN_LOST_SAMPLES);
+                    while (c.moveToNext()) {
+                        text.append(String.format(Locale.US, "%d. min %.1f ft, ", c.getPosition() + 1, c.getDouble(minHeight)));
+                        if (c.isNull(sinkRate)) {
+                            text.append("go-around");
+                        } else {
+                            text.append(String.format(Locale.US, "touchdown %.1f ft/s", c.getDouble(sinkRate)));
+                        }
+                        text.append(String.format(Locale.US, ", %.1f s below 10 ft, %d/%d samples lost\n",
+                                c.getLong(finalMs) / 1000.0, c.getInt(lost), c.getInt(samples) + c.getInt(lost)));
+                    }
+                }
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isDestroyed()) return;
+                        new AlertDialog.Builder(HistoryActivity.this)
+                                .setTitle(R.string.title_approaches)
+                                .setMessage((text.length() > 0) ? text.toString() : getString(R.string.no_approaches))
+                                .setPositiveButton(android.R.string.ok, null)
+                                .show();
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        final Cursor cursor = mAdapter.swapCursor(null);
+        if (cursor != null) cursor.close();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mCatalog.close();
+            }
+        });
+        mExecutor.shutdown();
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            // Respond to the action bar's Up/Home button
+            case android.R.id.home:
+                super.onBackPressed();
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.landingsensor;
+
+import android.content.SharedPreferences;
+
+/**
+ * Remembers which landing sensor is installed in which aircraft, so the app can reconnect
+ * to the right unit without scanning.  Devices are keyed by the aircraft identifier set in
+ * the "Aircraft" preference (e.g. a tail number).
+ */
+public class KnownDevices {
+    public static final String PREF_AIRCRAFT = "edit_text_preference_aircraft";
+    public static final String DEFAULT_AIRCRAFT = "default";
+    private static final String PREF_ADDRESS_PREFIX = "known_device_address_";
+    private static final String PREF_NAME_PREFIX = "known_device_name_";
+
+    public static String getAircraft(SharedPreferences prefs) {
+        String aircraft = prefs.getString(PREF_AIRCRAFT, DEFAULT_AIRCRAFT).trim();
+        return aircraft.isEmpty() ? DEFAULT_AIRCRAFT : aircraft;
+    }
+
+    /**
+     * @return The address of the sensor remembered for the current aircraft, or null if none.
+     */
+    public static String getAddress(SharedPreferences prefs) {
+        return prefs.getString(PREF_ADDRESS_PREFIX + getAircraft(prefs), null);
+    }
+
+    public static String getName(SharedPreferences prefs) {
+        return prefs.getString(PREF_NAME_PREFIX + getAircraft(prefs), GattAttributes.LANDING_SENSOR_NAME);
+    }
+
+    /**
+     * Remembers the given sensor for the current aircraft, replacing any previous one.
+     */
+    public static void remember(SharedPreferences prefs, String address, String name) {
+        final String aircraft = getAircraft(prefs);
+        prefs.edit()
+                .putString(PREF_ADDRESS_PREFIX + aircraft, address)
+                .putString(PREF_NAME_PREFIX + aircraft,
+                        (name == null || name.isEmpty()) ? GattAttributes.LANDING_SENSOR_NAME : name)
+                .apply();
+    }
+}
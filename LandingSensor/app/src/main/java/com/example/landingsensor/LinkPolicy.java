@@ -0,0 +1,90 @@
+package com.example.landingsensor;
+
+/**
+ * Chooses how hard to drive the BLE link from the flight phase, as seen by the rangefinder.
+ *
+ * Near the ground every ms of notification latency is height the pilot hasn't heard about,
+ * so the link runs at the shortest connection interval and 2M PHY.  At cruise the sensor is
+ * out of range and nothing is being called out, so the link relaxes, first to balanced (so a
+ * go-around or pattern work doesn't keep renegotiating) and then to low power.
+ *
+ * Not thread safe.  Times are in ms.
+ */
+public class LinkPolicy {
+    public static final int MODE_LOW_POWER = 0;
+    public static final int MODE_BALANCED = 1;
+    public static final int MODE_HIGH = 2;
+    public static final int MODE_COUNT = 3;
+
+    // Go to high priority on any reading below this; the TFMini only reaches about 39 ft, so
+    // this is as soon as the ground is reliably in view.
+    public static final double HIGH_BELOW_FT = 35.0;
+    // Stay at high priority while readings stay below this.
+    public static final double HIGH_UNTIL_FT = 38.0;
+    // Relax to balanced after this long without a reading below HIGH_UNTIL_FT.
+    public static final long HIGH_HOLD_MS = 5000;
+    // Relax to low power after this long without one.
+    public static final long BALANCED_HOLD_MS = 60000;
+
+    private int mMode = MODE_BALANCED;
+    private long mLastLowMs;
+
+    public static String modeName(int mode) {
+        switch (mode) {
+            case MODE_LOW_POWER: return "low power";
+            case MODE_BALANCED: return "balanced";
+            case MODE_HIGH: return "high";
+            default: return "unknown";
+        }
+    }
+
+    /**
+     * Starts over on a new connection, which the stack brings up at balanced priority.
+     */
+    public void reset(long now) {
+        mMode = MODE_BALANCED;
+        mLastLowMs = now;
+    }
+
+    public int getMode() {
+        return mMode;
+    }
+
+    /**
+     * @param height Distance reported by the rangefinder, in ft.
+     * @return The new mode if it changed, otherwise -1.
+     */
+    public int onDistance(long now, double height) {
+        final double threshold = (mMode == MODE_HIGH) ? HIGH_UNTIL_FT : HIGH_BELOW_FT;
+        if (height < threshold) {
+            mLastLowMs = now;
+            return setMode(MODE_HIGH);
+        }
+        return onTick(now);
+    }
+
+    /**
+     * Call periodically; the sensor stops sending distances when the ground is out of range,
+     * so relaxing can't wait for a sample.
+     *
+     * @return The new mode if it changed, otherwise -1.
+     */
+    public int onTick(long now) {
+        final long sinceLow = now - mLastLowMs;
+        if (sinceLow >= BALANCED_HOLD_MS) {
+            return setMode(MODE_LOW_POWER);
+        }
+        if (sinceLow >= HIGH_HOLD_MS && mMode == MODE_HIGH) {
+            return setMode(MODE_BALANCED);
+        }
+        return -1;
+    }
+
+    private int setMode(int mode) {
+        if (mode == mMode) {
+            return -1;
+        }
+        mMode = mode;
+        return mode;
+    }
+}
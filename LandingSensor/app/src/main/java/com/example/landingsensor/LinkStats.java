@@ -0,0 +1,139 @@
+package com.example.landingsensor;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Tracks the negotiated connection parameters for each {@code LinkPolicy} mode, and how
+ * distance notifications actually arrive in that mode.
+ *
+ * Notifications wait for the next connection event, so on top of the sensor's own latency each
+ * one is delayed by up to a connection interval: half an interval on average.  That's reported
+ * as the expected latency.  The sensor timestamps nothing, so the delay can't be measured
+ * directly; instead the jitter of the arrival times against the sensor's 10Hz period is
+ * reported, which grows with the interval and shows when notifications are being held back
+ * further (e.g. by retransmissions).
+ *
+ * Not thread safe.  Times are in ms.
+ */
+public class LinkStats {
+    public static final long SAMPLE_PERIOD_MS = 100;
+    // Gaps longer than this are dropouts, not jitter.
+    private static final long MAX_GAP_MS = 3 * SAMPLE_PERIOD_MS;
+
+    private int mMode = LinkPolicy.MODE_BALANCED;
+    private double mIntervalMs = Double.NaN;
+    private int mPhy = 1;
+    private long mLastNotificationMs = -1;
+
+    private final double[] mModeIntervalMs = new double[LinkPolicy.MODE_COUNT];
+    private final int[] mModePhy = new int[LinkPolicy.MODE_COUNT];
+    private final long[] mNotifications = new long[LinkPolicy.MODE_COUNT];
+    private final long[] mJitterCount = new long[LinkPolicy.MODE_COUNT];
+    private final double[] mJitterSquares = new double[LinkPolicy.MODE_COUNT];
+    private final double[] mMaxJitter = new double[LinkPolicy.MODE_COUNT];
+
+    public LinkStats() {
+        Arrays.fill(mModeIntervalMs, Double.NaN);
+    }
+
+    /**
+     * Starts over on a new connection.  Per mode totals are kept.
+     */
+    public void onConnected() {
+        mMode = LinkPolicy.MODE_BALANCED;
+        mIntervalMs = Double.NaN;
+        mPhy = 1;
+        mModePhy[mMode] = mPhy;
+        mLastNotificationMs = -1;
+    }
+
+    public void setMode(int mode) {
+        mMode = mode;
+        mModePhy[mode] = mPhy;
+        // Notifications straddling a change don't belong to either mode.
+        mLastNotificationMs = -1;
+    }
+
+    public void onConnectionUpdated(double intervalMs) {
+        mIntervalMs = intervalMs;
+        mModeIntervalMs[mMode] = intervalMs;
+    }
+
+    /**
+     * @param phy Receive PHY: 1 for 1M, 2 for 2M, 3 for coded.
+     */
+    public void onPhyUpdated(int phy) {
+        mPhy = phy;
+        mModePhy[mMode] = phy;
+    }
+
+    public void onNotification(long now) {
+        mNotifications[mMode]++;
+        if (mLastNotificationMs >= 0) {
+            final long gap = now - mLastNotificationMs;
+            if (gap <= MAX_GAP_MS) {
+                // Distance is only sent on a good reading, so gaps are whole periods apart.
+                final double jitter = gap - Math.max(1, Math.round(gap / (double) SAMPLE_PERIOD_MS)) * SAMPLE_PERIOD_MS;
+                mJitterCount[mMode]++;
+                mJitterSquares[mMode] += jitter * jitter;
+                mMaxJitter[mMode] = Math.max(mMaxJitter[mMode], Math.abs(jitter));
+            }
+        }
+        mLastNotificationMs = now;
+    }
+
+    public double getIntervalMs() {
+        return mIntervalMs;
+    }
+
+    public int getPhy() {
+        return mPhy;
+    }
+
+    /**
+     * @return Mean delay added by waiting for a connection event at the current interval, or
+     *         NaN if the interval isn't known yet.
+     */
+    public double getExpectedLatencyMs() {
+        return mIntervalMs / 2;
+    }
+
+    /**
+     * @return RMS arrival jitter in the given mode, or NaN if there's no data.
+     */
+    public double getJitterMs(int mode) {
+        return (mJitterCount[mode] > 0) ? Math.sqrt(mJitterSquares[mode] / mJitterCount[mode]) : Double.NaN;
+    }
+
+    public long getNotifications(int mode) {
+        return mNotifications[mode];
+    }
+
+    /**
+     * @return One line per mode that has been used.
+     */
+    public String report() {
+        final StringBuilder report = new StringBuilder();
+        for (int mode = LinkPolicy.MODE_COUNT - 1; mode >= 0; mode--) {
+            if (mNotifications[mode] == 0 && Double.isNaN(mModeIntervalMs[mode])) {
+                continue;
+            }
+            report.append(String.format(Locale.US,
+                    "%s: interval %.2f ms, %s PHY, expected latency %.1f ms (max %.1f), jitter %.1f ms rms (max %.0f) over %d notifications%n",
+                    LinkPolicy.modeName(mode), mModeIntervalMs[mode], phyName(mModePhy[mode]),
+                    mModeIntervalMs[mode] / 2, mModeIntervalMs[mode], getJitterMs(mode),
+                    mMaxJitter[mode], mNotifications[mode]));
+        }
+        return report.toString();
+    }
+
+    public static String phyName(int phy) {
+        switch (phy) {
+            case 1: return "1M";
+            case 2: return "2M";
+            case 3: return "coded";
+            default: return "?";
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.landingsensor;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Feeds the phone's accelerometer and barometer into a {@code HeightFusion} alongside the
+ * rangefinder samples received from the sensor.
+ *
+ * The phone sensors are registered with a max report latency, so the hardware FIFO batches
+ * their readings and the application processor is woken about every 100ms instead of for every
+ * reading.  {@code HeightFusion} holds rangefinder samples until the batch that
+ * overlaps them arrives, so batching delays corrections but not the estimate itself.
+ *
+ * Sensor events are handled on a background thread; the other methods are called from the
+ * main thread.
+ */
+public class PhoneSensorFusion implements SensorEventListener {
+    private final static String TAG = PhoneSensorFusion.class.getSimpleName();
+
+    private static final int ACCEL_PERIOD_US = 20000;
+    private static final int PRESSURE_PERIOD_US = 100000;
+    // Let the FIFO batch up to this long.  Must stay well under HeightFusion.MAX_HOLD_NS, or
+    // rangefinder samples will be applied before the accelerometer readings that precede them.
+    private static final int MAX_REPORT_LATENCY_US = 100000;
+    // Time constant of the low-pass filter that separates gravity from motion.
+    private static final double GRAVITY_TAU_S = 1.0;
+
+    private final SensorManager mSensorManager;
+    private final Sensor mAccelerometer;
+    private final Sensor mBarometer;
+    private final HeightFusion mFusion = new HeightFusion();
+    private HandlerThread mThread;
+
+    // Only touched on the sensor thread.
+    private final double[] mGravity = new double[3];
+    private long mGravityTime = 0;
+
+    private double mVerticalSpeed;
+
+    public PhoneSensorFusion(Context context) {
+        mSensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        mAccelerometer = mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        mBarometer = mSensorManager.getDefaultSensor(Sensor.TYPE_PRESSURE);
+    }
+
+    /**
+     * @return False if the phone has no accelerometer, in which case only the rangefinder is
+     *         used.
+     */
+    public boolean start() {
+        if (mThread != null) {
+            return true;
+        }
+        if (mAccelerometer == null) {
+            Log.w(TAG, "No accelerometer, not fusing phone sensors");
+            return false;
+        }
+        mGravityTime = 0;
+        mThread = new HandlerThread(TAG);
+        mThread.start();
+        final Handler handler = new Handler(mThread.getLooper());
+        mSensorManager.registerListener(this, mAccelerometer, ACCEL_PERIOD_US, MAX_REPORT_LATENCY_US, handler);
+        if (mBarometer != null) {
+            mSensorManager.registerListener(this, mBarometer, PRESSURE_PERIOD_US, MAX_REPORT_LATENCY_US, handler);
+        }
+        Log.d(TAG, String.format("Fusing accelerometer (FIFO %d) and %s",
+                mAccelerometer.getFifoMaxEventCount(),
+                (mBarometer != null) ? "barometer" : "no barometer"));
+        return true;
+    }
+
+    public void stop() {
+        if (mThread == null) {
+            return;
+        }
+        mSensorManager.unregisterListener(this);
+        mThread.quitSafely();
+        mThread = null;
+        reset();
+    }
+
+    /**
+     * Forgets the estimate, e.g. on disconnect.
+     */
+    public synchronized void reset() {
+        mFusion.reset();
+    }
+
+    /**
+     * @param time When the reading was received, from {@code SystemClock.elapsedRealtimeNanos()},
+     *             so that a reading processed late still lands in order with the phone sensors.
+     * @param height Rangefinder distance to the ground, with offset applied.
+     * @param flux Signal strength of the latest flux report, or -1 if unknown.  The sensor only
+     *             reports flux every couple of seconds, so this gates readings on recent signal
+     *             strength rather than on that of this particular return.
+     */
+    public synchronized void onRange(long time, double height, int flux) {
+        mFusion.onRange(time, height, flux);
+    }
+
+    /**
+     * @return Estimated height above ground now, or NaN if there's no valid estimate.
+     */
+    public synchronized double estimateHeight() {
+        if (!mFusion.estimate(SystemClock.elapsedRealtimeNanos())) {
+            return Double.NaN;
+        }
+        mVerticalSpeed = mFusion.getVerticalSpeed();
+        return mFusion.getHeight();
+    }
+
+    /**
+     * @return Vertical speed (positive up) in ft/s, as of the last {@code estimateHeight()}.
+     */
+    public synchronized double getVerticalSpeed() {
+        return mVerticalSpeed;
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
+            onAccelerometer(event.timestamp, event.values);
+        } else if (event.sensor.getType() == Sensor.TYPE_PRESSURE) {
+            synchronized (this) {
+                mFusion.onPressureAltitude(event.timestamp, HeightFusion.pressureAltitude(event.values[0]));
+            }
+        }
+    }
+
+    private void onAccelerometer(long time, float[] values) {
+        // The phone may be mounted at any angle, so project onto the low-passed gravity vector
+        // rather than using a fixed axis.
+        if (mGravityTime == 0) {
+            for (int i = 0; i < 3; i++) mGravity[i] = values[i];
+        } else {
+            final double dt = (time - mGravityTime) / 1e9;
+            final double alpha = dt / (dt + GRAVITY_TAU_S);
+            for (int i = 0; i < 3; i++) mGravity[i] += (values[i] - mGravity[i]) * alpha;
+        }
+        mGravityTime = time;
+        final double g = Math.sqrt(mGravity[0] * mGravity[0] + mGravity[1] * mGravity[1] + mGravity[2] * mGravity[2]);
+        if (g == 0) {
+            return;
+        }
+        final double up = (values[0] * mGravity[0] + values[1] * mGravity[1] + values[2] * mGravity[2]) / g;
+        synchronized (this) {
+            mFusion.onAcceleration(time, (up - g) * HeightFusion.FT_PER_M);
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.landingsensor
+
+/**
+ * The sensor's state after one decoded notification.  Each notification carries one channel;
+ * the others hold their last values, so any single sample is a complete picture and a consumer
+ * that only sees the latest sample misses nothing but history.
+ *
+ * Immutable, so samples can be handed to any number of consumers on any thread.
+ */
+class Sample(
+    /** When the notification was received, from `SystemClock.elapsedRealtime()`. */
+    @JvmField val timeMs: Long,
+    /** Which channel this notification updated; one of the constants below. */
+    @JvmField val channel: Int,
+    /** Raw distance in feet, without the offset applied, or NaN before the first reading. */
+    @JvmField val distance: Double,
+    /** Receive time of the latest distance reading, or -1 before the first. */
+    @JvmField val distanceTimeMs: Long,
+    @JvmField val flux: Int,
+    /** Sensor temperature in C. */
+    @JvmField val temp: Double,
+    /** TFMini status text, or "" before the first. */
+    @JvmField val status: String,
+) {
+    fun with(timeMs: Long, channel: Int, distance: Double = this.distance, flux: Int = this.flux,
+             temp: Double = this.temp, status: String = this.status): Sample {
+        val distanceTimeMs = if (channel == DISTANCE) timeMs else this.distanceTimeMs
+        return Sample(timeMs, channel, distance, distanceTimeMs, flux, temp, status)
+    }
+
+    override fun toString() =
+        "Sample(t=$timeMs, channel=$channel, distance=$distance, flux=$flux, temp=$temp, status=$status)"
+
+    companion object {
+        const val DISTANCE = 0
+        const val FLUX = 1
+        const val TEMP = 2
+        const val STATUS = 3
+
+        @JvmField
+        val EMPTY = Sample(0, -1, Double.NaN, -1, 0, 0.0, "")
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.landingsensor;
+
+import java.util.Arrays;
+
+/**
+ * In-memory history of every channel the sensor reports, for scrubbing and zooming through a
+ * whole flight.
+ *
+ * Each channel is kept as a pyramid of min/max buckets: level 0 buckets are
+ * {@code baseBucketMs} wide, and each level above is {@code FANOUT} times wider.  Every append
+ * updates the open bucket of each level, so appends are constant time and allocate nothing.
+ * Each level is a fixed size ring of closed buckets, so memory is bounded however long the
+ * session and however fast the samples: fine levels hold the last few minutes, coarse ones the
+ * whole flight.  A query picks the level whose buckets are about a pixel wide and still cover
+ * the requested range, so any zoom renders from O(pixels) buckets.
+ *
+ * Thread safe.  Times are in ms, on any monotonic base, and must not go backwards.
+ */
+public class SampleHistory {
+    // Channels, numbered as in Sample.
+    public static final int DISTANCE = 0;
+    public static final int FLUX = 1;
+    public static final int TEMP = 2;
+    public static final int STATUS = 3;
+    public static final int CHANNEL_COUNT = 4;
+
+    public static final int LEVELS = 8;
+    public static final int FANOUT = 4;
+    public static final long DEFAULT_BASE_BUCKET_MS = 100;
+    // With 100ms buckets, level 0 holds the last 6.8 minutes and level 3 the last 7.3 hours.
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    // TFMini status text, ordered from healthy to worst so that a bucket's max is the worst
+    // status seen in it.
+    private static final String[] STATUSES = {
+            "Ready", "Pass", "Timeout", "Checksum error", "Header parser error",
+            "Serial connection error", "Fail"};
+
+    private final int mCapacity;
+    private final long[] mWidth = new long[LEVELS];
+    // Time of the first sample; bucket starts are stored relative to it.
+    private long mOrigin = -1;
+    private long mLatest = -1;
+
+    // Closed buckets, per channel and level, as rings of mCapacity.
+    private final int[][][] mStart = new int[CHANNEL_COUNT][LEVELS][];
+    private final float[][][] mMin = new float[CHANNEL_COUNT][LEVELS][];
+    private final float[][][] mMax = new float[CHANNEL_COUNT][LEVELS][];
+    // Next slot to write, and number of closed buckets held.
+    private final int[][] mHead = new int[CHANNEL_COUNT][LEVELS];
+    private final int[][] mCount = new int[CHANNEL_COUNT][LEVELS];
+    // The bucket still being filled at each level, if any.
+    private final boolean[][] mOpen = new boolean[CHANNEL_COUNT][LEVELS];
+    private final int[][] mOpenStart = new int[CHANNEL_COUNT][LEVELS];
+    private final float[][] mOpenMin = new float[CHANNEL_COUNT][LEVELS];
+    private final float[][] mOpenMax = new float[CHANNEL_COUNT][LEVELS];
+
+    public SampleHistory() {
+        this(DEFAULT_BASE_BUCKET_MS, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param baseBucketMs Width of the finest buckets.
+     * @param capacity Buckets kept per level and channel.
+     */
+    public SampleHistory(long baseBucketMs, int capacity) {
+        if (baseBucketMs < 1 || capacity < 2) {
+            throw new IllegalArgumentException("Bad history size: " + baseBucketMs + " ms x " + capacity);
+        }
+        mCapacity = capacity;
+        long width = baseBucketMs;
+        for (int level = 0; level < LEVELS; level++) {
+            mWidth[level] = width;
+            width *= FANOUT;
+        }
+        for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+            for (int level = 0; level < LEVELS; level++) {
+                mStart[channel][level] = new int[capacity];
+                mMin[channel][level] = new float[capacity];
+                mMax[channel][level] = new float[capacity];
+            }
+        }
+    }
+
+    /**
+     * @return Status code for a TFMini status, higher is worse, or {@code STATUSES.length} for
+     *         unrecognized text.
+     */
+    public static int statusCode(String status) {
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (STATUSES[i].equals(status)) {
+                return i;
+            }
+        }
+        return STATUSES.length;
+    }
+
+    public static String statusText(int code) {
+        return (code >= 0 && code < STATUSES.length) ? STATUSES[code] : "Unknown";
+    }
+
+    public long getBucketWidthMs(int level) {
+        return mWidth[level];
+    }
+
+    /**
+     * @return Time of the first sample, or -1 if there are none.
+     */
+    public synchronized long getStartTime() {
+        return mOrigin;
+    }
+
+    /**
+     * @return Time of the latest sample, or -1 if there are none.
+     */
+    public synchronized long getEndTime() {
+        return mLatest;
+    }
+
+    public synchronized void clear() {
+        mOrigin = -1;
+        mLatest = -1;
+        for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+            Arrays.fill(mHead[channel], 0);
+            Arrays.fill(mCount[channel], 0);
+            Arrays.fill(mOpen[channel], false);
+        }
+    }
+
+    /**
+     * Records a sample.  Samples older than the channel's open bucket are dropped.
+     */
+    public synchronized void append(int channel, long time, float value) {
+        if (mOrigin < 0) {
+            mOrigin = time;
+        }
+        final long relative = time - mOrigin;
+        if (relative < 0 || relative > Integer.MAX_VALUE) {
+            return;
+        }
+        final int t = (int) relative;
+        if (mOpen[channel][0] && t < mOpenStart[channel][0]) {
+            return;
+        }
+        mLatest = Math.max(mLatest, time);
+        for (int level = 0; level < LEVELS; level++) {
+            final int start = (int) (t - t % mWidth[level]);
+            if (mOpen[channel][level]) {
+                if (start == mOpenStart[channel][level]) {
+                    mOpenMin[channel][level] = Math.min(mOpenMin[channel][level], value);
+                    mOpenMax[channel][level] = Math.max(mOpenMax[channel][level], value);
+                    continue;
+                }
+                close(channel, level);
+            }
+            mOpen[channel][level] = true;
+            mOpenStart[channel][level] = start;
+            mOpenMin[channel][level] = value;
+            mOpenMax[channel][level] = value;
+        }
+    }
+
+    private void close(int channel, int level) {
+        final int slot = mHead[channel][level];
+        mStart[channel][level][slot] = mOpenStart[channel][level];
+        mMin[channel][level][slot] = mOpenMin[channel][level];
+        mMax[channel][level][slot] = mOpenMax[channel][level];
+        mHead[channel][level] = (slot + 1) % mCapacity;
+        mCount[channel][level] = Math.min(mCount[channel][level] + 1, mCapacity);
+    }
+
+    /**
+     * Renders a channel over {@code [from, to)} into {@code min.length} columns, each the min and
+     * max of the samples falling in it.  Columns with no samples are NaN.
+     *
+     * @return The pyramid level the columns were drawn from, or -1 if there's no data.
+     */
+    public synchronized int query(int channel, long from, long to, float[] min, float[] max) {
+        final int columns = min.length;
+        Arrays.fill(min, Float.NaN);
+        Arrays.fill(max, Float.NaN);
+        if (mOrigin < 0 || to <= from || columns == 0) {
+            return -1;
+        }
+        final long start = from - mOrigin;
+        final long span = to - from;
+        final int level = chooseLevel(channel, start, span / (double) columns);
+
+        // Closed buckets overlapping the range, oldest first, then the open one.
+        final int count = mCount[channel][level];
+        final int oldest = (mHead[channel][level] - count + mCapacity) % mCapacity;
+        int first = firstEndingAfter(channel, level, oldest, count, start);
+        for (int i = first; i < count; i++) {
+            final int slot = (oldest + i) % mCapacity;
+            final int bucketStart = mStart[channel][level][slot];
+            if (bucketStart - start >= span) {
+                break;
+            }
+            accumulate(bucketStart - start, mWidth[level], span, mMin[channel][level][slot], mMax[channel][level][slot], min, max);
+        }
+        if (mOpen[channel][level]) {
+            final int bucketStart = mOpenStart[channel][level];
+            if (bucketStart + mWidth[level] > start && bucketStart - start < span) {
+                accumulate(bucketStart - start, mWidth[level], span, mOpenMin[channel][level], mOpenMax[channel][level], min, max);
+            }
+        }
+        return level;
+    }
+
+    // The coarsest level with buckets no wider than a column, unless that level no longer
+    // reaches back to the start of the range, in which case the finest one that does.
+    private int chooseLevel(int channel, long start, double columnMs) {
+        int level = 0;
+        while (level + 1 < LEVELS && mWidth[level + 1] <= columnMs) {
+            level++;
+        }
+        while (level + 1 < LEVELS && !covers(channel, level, start)) {
+            level++;
+        }
+        return level;
+    }
+
+    private boolean covers(int channel, int level, long start) {
+        final int count = mCount[channel][level];
+        if (count < mCapacity) {
+            // Nothing evicted yet.
+            return true;
+        }
+        final int oldest = mHead[channel][level];
+        return mStart[channel][level][oldest] <= start;
+    }
+
+    // Index (from the oldest) of the first closed bucket that ends after time.
+    private int firstEndingAfter(int channel, int level, int oldest, int count, long time) {
+        final long width = mWidth[level];
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (mStart[channel][level][(oldest + mid) % mCapacity] + width <= time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Merges a bucket into every column it overlaps, so a bucket wider than a column (e.g. from
+    // a coarser level after eviction) leaves no gaps.
+    private static void accumulate(long offset, long width, long span, float bucketMin, float bucketMax,
+                                   float[] min, float[] max) {
+        final int first = column(offset, span, min.length);
+        final int last = column(offset + width - 1, span, min.length);
+        for (int column = first; column <= last; column++) {
+            if (Float.isNaN(min[column])) {
+                min[column] = bucketMin;
+                max[column] = bucketMax;
+            } else {
+                min[column] = Math.min(min[column], bucketMin);
+                max[column] = Math.max(max[column], bucketMax);
+            }
+        }
+    }
+
+    private static int column(long offset, long span, int columns) {
+        return (int) Math.max(0, Math.min(columns - 1, offset * columns / span));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.landingsensor;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Plays back an endless series of {@code SyntheticApproach}es as the characteristic values the
+ * sensor would notify, at the sensor's rate, so the whole pipeline from decode to speech can be
+ * exercised without a sensor.  Used by the benchmarks; only available in builds with
+ * {@code BuildConfig.SIMULATION_ENABLED}.
+ *
+ * The seed is fixed so that every run sees the same samples.
+ */
+public class SampleSimulator {
+    public static final long SAMPLE_PERIOD_MS = 100;
+    // Like the firmware (TEMP_FLUX_REPORT_PD), status, flux and temperature follow every 20th
+    // distance sample, i.e. every 2s.
+    private static final int SLOW_PERIOD = 20;
+    private static final long SEED = 1;
+
+    public interface Listener {
+        void onSimulatedValue(BluetoothGattCharacteristic characteristic);
+    }
+
+    private final Handler mHandler;
+    private final Listener mListener;
+    private final Random mRandom = new Random(SEED);
+    private final BluetoothGattCharacteristic mDist = makeCharacteristic(GattAttributes.SENSOR_DIST_CHARACTERISTIC);
+    private final BluetoothGattCharacteristic mFlux = makeCharacteristic(GattAttributes.SENSOR_FLUX_CHARACTERISTIC);
+    private final BluetoothGattCharacteristic mTemp = makeCharacteristic(GattAttributes.SENSOR_TEMP_CHARACTERISTIC);
+    private final BluetoothGattCharacteristic mStatus = makeCharacteristic(GattAttributes.SENSOR_STATUS_CHARACTERISTIC);
+    private SyntheticApproach mApproach;
+    private int mIndex;
+    private long mStartMs;
+    private int mDistCount;
+    private boolean mRunning = false;
+
+    private final Runnable mTickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    public SampleSimulator(Handler handler, Listener listener) {
+        mHandler = handler;
+        mListener = listener;
+    }
+
+    private static BluetoothGattCharacteristic makeCharacteristic(String uuid) {
+        return new BluetoothGattCharacteristic(UUID.fromString(uuid),
+                BluetoothGattCharacteristic.PROPERTY_NOTIFY, 0);
+    }
+
+    public void start() {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        nextApproach();
+        mHandler.post(mTickRunnable);
+    }
+
+    public void stop() {
+        mRunning = false;
+        mHandler.removeCallbacks(mTickRunnable);
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    private void nextApproach() {
+        mApproach = SyntheticApproach.generate(mRandom, SAMPLE_PERIOD_MS);
+        mIndex = 0;
+        mStartMs = SystemClock.uptimeMillis();
+    }
+
+    private void tick() {
+        final long elapsed = SystemClock.uptimeMillis() - mStartMs;
+        // Send every sample that's due; approaches leave out the samples lost to dropouts.
+        while (mIndex < mApproach.time.length && mApproach.time[mIndex] <= elapsed) {
+            // The sensor sends cm.
+            mDist.setValue((int) Math.round(mApproach.reading[mIndex] / 0.0328084),
+                    BluetoothGattCharacteristic.FORMAT_UINT16, 0);
+            mListener.onSimulatedValue(mDist);
+            mIndex++;
+            if (++mDistCount % SLOW_PERIOD == 0) {
+                mStatus.setValue("Ready");
+                mListener.onSimulatedValue(mStatus);
+                mFlux.setValue(500 + mRandom.nextInt(1000), BluetoothGattCharacteristic.FORMAT_UINT16, 0);
+                mListener.onSimulatedValue(mFlux);
+                // Tenths of a degree C.
+                mTemp.setValue(250, BluetoothGattCharacteristic.FORMAT_UINT16, 0);
+                mListener.onSimulatedValue(mTemp);
+            }
+        }
+        final long next = mStartMs + (elapsed / SAMPLE_PERIOD_MS + 1) * SAMPLE_PERIOD_MS;
+        if (mIndex >= mApproach.time.length) {
+            nextApproach();
+        }
+        if (mRunning) {
+            mHandler.postAtTime(mTickRunnable, next);
+        }
+    }
+}
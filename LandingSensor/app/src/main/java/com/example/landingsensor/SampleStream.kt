@@ -0,0 +1,92 @@
+package com.example.landingsensor
+
+import android.os.Handler
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.android.asCoroutineDispatcher
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.SendChannel
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.buffer
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.launch
+import java.io.Closeable
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * Hot stream of decoded samples with any number of consumers, each with its own buffer and
+ * overflow policy.
+ *
+ * Every subscriber gets a private channel.  [publish] only ever calls `trySend` on them, which
+ * never suspends: a lossless buffer grows, a conflated one keeps the newest sample, and a
+ * bounded one drops its oldest.  So the GATT callback thread is never blocked, and a slow
+ * consumer only ever delays itself.
+ */
+class SampleStream {
+    /** How a subscriber's buffer behaves when it falls behind. */
+    class Policy private constructor(
+        internal val capacity: Int,
+        internal val overflow: BufferOverflow,
+        private val name: String,
+    ) {
+        override fun toString() = name
+
+        companion object {
+            /** Every sample, buffered without limit; for recording. */
+            @JvmField
+            val LOSSLESS = Policy(Channel.UNLIMITED, BufferOverflow.SUSPEND, "lossless")
+
+            /** Only the newest sample; for display. */
+            @JvmField
+            val LATEST = Policy(Channel.CONFLATED, BufferOverflow.SUSPEND, "latest")
+
+            /** The newest [capacity] samples; for audio, which must not fall behind. */
+            @JvmStatic
+            fun dropOldest(capacity: Int): Policy {
+                require(capacity > 0) { "capacity must be positive" }
+                return Policy(capacity, BufferOverflow.DROP_OLDEST, "drop oldest($capacity)")
+            }
+        }
+    }
+
+    /** Receives samples from [subscribe]; for Java callers. */
+    fun interface Listener {
+        fun onSample(sample: Sample)
+    }
+
+    private val subscribers = CopyOnWriteArrayList<SendChannel<Sample>>()
+
+    val subscriberCount: Int
+        get() = subscribers.size
+
+    /**
+     * Samples published from when collection starts, buffered according to [policy].
+     */
+    fun samples(policy: Policy): Flow<Sample> = callbackFlow {
+        subscribers.add(channel)
+        awaitClose { subscribers.remove(channel) }
+    }.buffer(policy.capacity, policy.overflow)
+
+    /**
+     * Hands [sample] to every subscriber without blocking.  May be called from any thread.
+     */
+    fun publish(sample: Sample) {
+        for (subscriber in subscribers) {
+            subscriber.trySend(sample)
+        }
+    }
+
+    /**
+     * Calls [listener] with each sample on [handler]'s thread, until the returned subscription
+     * is closed.
+     */
+    fun subscribe(policy: Policy, handler: Handler, listener: Listener): Closeable {
+        val job: Job = CoroutineScope(handler.asCoroutineDispatcher()).launch {
+            samples(policy).collect { listener.onSample(it) }
+        }
+        return Closeable { job.cancel() }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.landingsensor;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Detects when distance samples stop arriving while the link is still up (e.g. the sensor
+ * reports {@code Timeout}, or the radio stalls).  Every sample pushes a deadline forward;
+ * if the deadline passes before the next sample, data is declared stale.
+ *
+ * Stale data is reported straight away so callouts stop, but a loss is only reported as one
+ * once it has lasted {@code LOST_MS}, so a gap of a packet or two doesn't chatter "lost" and
+ * "regained".
+ */
+public class SampleWatchdog {
+    private final static String TAG = SampleWatchdog.class.getSimpleName();
+
+    // Sensor samples at 10Hz; 250ms is two and a half sample periods.
+    public static final long DEFAULT_TIMEOUT_MS = 250;
+    // How long data must stay stale before it counts as a loss.
+    public static final long LOST_MS = 1000;
+
+    public interface Listener {
+        /** Called once when no sample has arrived for the configured timeout. */
+        void onStale();
+
+        /** Called once when data has stayed stale for {@code LOST_MS} more. */
+        void onLost();
+
+        /**
+         * Called on the first sample after {@code onStale()}, with the length of the gap.
+         *
+         * @param wasLost True if {@code onLost()} was called for this gap.
+         */
+        void onRecovered(long gapMs, boolean wasLost);
+    }
+
+    private final Handler mHandler;
+    private final Listener mListener;
+    private long mTimeoutMs = DEFAULT_TIMEOUT_MS;
+    private long mLastSampleMs;
+    private boolean mArmed = false;
+    private boolean mStale = false;
+    // Stale because watching stopped, rather than because the deadline passed.
+    private boolean mStopped = false;
+    private boolean mLost = false;
+    private int mGapCount = 0;
+    private long mLongestGapMs = 0;
+
+    private final Runnable mDeadline = new Runnable() {
+        @Override
+        public void run() {
+            mStale = true;
+            Log.w(TAG, String.format("No sample for %d ms, data is stale",
+                    SystemClock.elapsedRealtime() - mLastSampleMs));
+            mListener.onStale();
+            mHandler.postDelayed(mLostDeadline, LOST_MS);
+        }
+    };
+
+    private final Runnable mLostDeadline = new Runnable() {
+        @Override
+        public void run() {
+            mLost = true;
+            mListener.onLost();
+        }
+    };
+
+    public SampleWatchdog(Handler handler, Listener listener) {
+        mHandler = handler;
+        mListener = listener;
+    }
+
+    public void setTimeoutMs(long timeoutMs) {
+        mTimeoutMs = Math.max(1, timeoutMs);
+    }
+
+    /**
+     * Records the arrival of a fresh sample and restarts the deadline.
+     */
+    public void onSample() {
+        final long now = SystemClock.elapsedRealtime();
+        if (mStale && !mStopped) {
+            final long gap = now - mLastSampleMs;
+            mGapCount++;
+            mLongestGapMs = Math.max(mLongestGapMs, gap);
+            Log.i(TAG, String.format("Samples resumed after %d ms gap (%d gaps, longest %d ms)",
+                    gap, mGapCount, mLongestGapMs));
+            mListener.onRecovered(gap, mLost);
+        }
+        mStale = false;
+        mStopped = false;
+        mLost = false;
+        mLastSampleMs = now;
+        mArmed = true;
+        mHandler.removeCallbacks(mDeadline);
+        mHandler.removeCallbacks(mLostDeadline);
+        mHandler.postDelayed(mDeadline, mTimeoutMs);
+    }
+
+    /**
+     * Stops watching, e.g. on disconnect or when samples are no longer being received.
+     * Any data already received stays stale until the next sample, which re-arms the watchdog
+     * without reporting a recovery.
+     */
+    public void stop() {
+        mHandler.removeCallbacks(mDeadline);
+        mHandler.removeCallbacks(mLostDeadline);
+        if (mArmed) {
+            mStale = true;
+            mStopped = true;
+        }
+        mArmed = false;
+    }
+
+    /**
+     * @return True if samples were flowing and then stopped, for longer than the timeout or
+     *         because watching was stopped.
+     */
+    public boolean isStale() {
+        return mStale;
+    }
+}
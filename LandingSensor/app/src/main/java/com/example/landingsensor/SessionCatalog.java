@@ -0,0 +1,147 @@
+package com.example.landingsensor;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+/**
+ * On-device index of recorded sessions and the approaches detected in them.  Summary columns
+ * are maintained as the session is recorded, so listing sessions is a single indexed query
+ * that never touches the sample logs.
+ */
+public class SessionCatalog extends SQLiteOpenHelper {
+    private static final String DATABASE_NAME = "sessions.db";
+    private static final int DATABASE_VERSION = 1;
+
+    public static final String TABLE_SESSIONS = "sessions";
+    public static final String TABLE_APPROACHES = "approaches";
+
+    // Columns of TABLE_SESSIONS.  Times are wall clock ms.
+    public static final String COLUMN_ID = "_id";
+    public static final String COLUMN_START_TIME = "start_time";
+    public static final String COLUMN_END_TIME = "end_time";
+    public static final String COLUMN_AIRCRAFT = "aircraft";
+    public static final String COLUMN_DEVICE_ADDRESS = "device_address";
+    public static final String COLUMN_SAMPLES_FILE = "samples_file";
+    public static final String COLUMN_SAMPLE_COUNT = "sample_count";
+    public static final String COLUMN_APPROACH_COUNT = "approach_count";
+    public static final String COLUMN_LANDING_COUNT = "landing_count";
+
+    // Columns of TABLE_APPROACHES, in addition to _id, start_time and end_time.
+    public static final String COLUMN_SESSION_ID = "session_id";
+    public static final String COLUMN_MIN_HEIGHT = "min_height";
+    public static final String COLUMN_TOUCHDOWN_SINK_RATE = "touchdown_sink_rate";
+    public static final String COLUMN_FINAL_MS = "final_ms";
+    public static final String COLUMN_LOST_SAMPLES = "lost_samples";
+
+    public SessionCatalog(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SESSIONS + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_START_TIME + " INTEGER NOT NULL, "
+                + COLUMN_END_TIME + " INTEGER, "
+                + COLUMN_AIRCRAFT + " TEXT, "
+                + COLUMN_DEVICE_ADDRESS + " TEXT, "
+                + COLUMN_SAMPLES_FILE + " TEXT, "
+                + COLUMN_SAMPLE_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_APPROACH_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_LANDING_COUNT + " INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX sessions_by_start ON " + TABLE_SESSIONS
+                + " (" + COLUMN_START_TIME + " DESC)");
+        db.execSQL("CREATE TABLE " + TABLE_APPROACHES + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_SESSION_ID + " INTEGER NOT NULL REFERENCES " + TABLE_SESSIONS + " ON DELETE CASCADE, "
+                + COLUMN_START_TIME + " INTEGER NOT NULL, "
+                + COLUMN_END_TIME + " INTEGER NOT NULL, "
+                + COLUMN_MIN_HEIGHT + " REAL NOT NULL, "
+                + COLUMN_TOUCHDOWN_SINK_RATE + " REAL, "
+                + COLUMN_FINAL_MS + " INTEGER NOT NULL, "
+                + COLUMN_SAMPLE_COUNT + " INTEGER NOT NULL, "
+                + COLUMN_LOST_SAMPLES + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX approaches_by_session ON " + TABLE_APPROACHES
+                + " (" + COLUMN_SESSION_ID + ", " + COLUMN_START_TIME + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Only one version so far.
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    /**
+     * @return The id of the new session.
+     */
+    public long startSession(long startTime, String aircraft, String deviceAddress, String samplesFile) {
+        final ContentValues values = new ContentValues();
+        values.put(COLUMN_START_TIME, startTime);
+        values.put(COLUMN_AIRCRAFT, aircraft);
+        values.put(COLUMN_DEVICE_ADDRESS, deviceAddress);
+        values.put(COLUMN_SAMPLES_FILE, samplesFile);
+        return getWritableDatabase().insert(TABLE_SESSIONS, null, values);
+    }
+
+    public void endSession(long sessionId, long endTime, int sampleCount) {
+        final ContentValues values = new ContentValues();
+        values.put(COLUMN_END_TIME, endTime);
+        values.put(COLUMN_SAMPLE_COUNT, sampleCount);
+        getWritableDatabase().update(TABLE_SESSIONS, values, COLUMN_ID + " = ?",
+                new String[]{String.valueOf(sessionId)});
+    }
+
+    /**
+     * Stores an approach and bumps its session's counters in one transaction.
+     *
+     * @param startTime Wall clock start of the approach.
+     */
+    public void addApproach(long sessionId, long startTime, ApproachTracker.Approach approach) {
+        final SQLiteDatabase db = getWritableDatabase();
+        final ContentValues values = new ContentValues();
+        values.put(COLUMN_SESSION_ID, sessionId);
+        values.put(COLUMN_START_TIME, startTime);
+        values.put(COLUMN_END_TIME, startTime + (approach.endTime - approach.startTime));
+        values.put(COLUMN_MIN_HEIGHT, approach.minHeight);
+        if (approach.landed()) {
+            values.put(COLUMN_TOUCHDOWN_SINK_RATE, approach.touchdownSinkRate);
+        }
+        values.put(COLUMN_FINAL_MS, approach.finalMs);
+        values.put(COLUMN_SAMPLE_COUNT, approach.sampleCount);
+        values.put(COLUMN_LOST_SAMPLES, approach.lostSamples);
+        db.beginTransaction();
+        try {
+            db.insert(TABLE_APPROACHES, null, values);
+            db.execSQL("UPDATE " + TABLE_SESSIONS + " SET "
+                    + COLUMN_APPROACH_COUNT + " = " + COLUMN_APPROACH_COUNT + " + 1, "
+                    + COLUMN_LANDING_COUNT + " = " + COLUMN_LANDING_COUNT + " + ? WHERE "
+                    + COLUMN_ID + " = ?", new Object[]{approach.landed() ? 1 : 0, sessionId});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @return All sessions, newest first.
+     */
+    public Cursor querySessions() {
+        return getReadableDatabase().query(TABLE_SESSIONS, null, null, null, null, null,
+                COLUMN_START_TIME + " DESC");
+    }
+
+    /**
+     * @return The approaches of a session, in order.
+     */
+    public Cursor queryApproaches(long sessionId) {
+        return getReadableDatabase().query(TABLE_APPROACHES, null, COLUMN_SESSION_ID + " = ?",
+                new String[]{String.valueOf(sessionId)}, null, null, COLUMN_START_TIME);
+    }
+}
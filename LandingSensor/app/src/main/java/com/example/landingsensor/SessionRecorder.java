@@ -0,0 +1,127 @@
+package com.example.landingsensor;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Records a session of distance samples to a log file and indexes it in the
+ * {@code SessionCatalog}, summarizing approaches as the samples arrive.  Every method does its
+ * disk access directly, so all of them must be called from one background thread.
+ *
+ * Sample logs are CSV files of {@code time_ms,distance_ft}, with time relative to the start of
+ * the session.
+ */
+public class SessionRecorder implements ApproachTracker.Listener {
+    private final static String TAG = SessionRecorder.class.getSimpleName();
+    public static final String SAMPLES_DIR = "sessions";
+
+    private final Context mContext;
+    private final SessionCatalog mCatalog;
+    private final ApproachTracker mTracker = new ApproachTracker(this);
+
+    private boolean mRecording = false;
+    private long mSessionId = -1;
+    private BufferedWriter mWriter;
+    // Wall clock and monotonic time at the start of the session.
+    private long mStartWallTime;
+    private long mStartTime;
+    private int mSampleCount;
+
+    public SessionRecorder(Context context) {
+        mContext = context.getApplicationContext();
+        mCatalog = new SessionCatalog(mContext);
+    }
+
+    public boolean isRecording() {
+        return mRecording;
+    }
+
+    public void start(String aircraft, String deviceAddress) {
+        if (mRecording) {
+            return;
+        }
+        mRecording = true;
+        mTracker.reset();
+        mStartWallTime = System.currentTimeMillis();
+        mStartTime = SystemClock.elapsedRealtime();
+        mSampleCount = 0;
+
+        final File dir = new File(mContext.getFilesDir(), SAMPLES_DIR);
+        final File file = new File(dir, new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US)
+                .format(new Date(mStartWallTime)) + ".csv");
+        try {
+            dir.mkdirs();
+            mWriter = new BufferedWriter(new FileWriter(file));
+            mWriter.write("time_ms,distance_ft\n");
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to open sample log " + file, e);
+            mWriter = null;
+        }
+        mSessionId = mCatalog.startSession(mStartWallTime, aircraft, deviceAddress,
+                (mWriter != null) ? file.getAbsolutePath() : null);
+        Log.i(TAG, "Started session " + mSessionId);
+    }
+
+    /**
+     * @param time Sample time from {@code SystemClock.elapsedRealtime()}.
+     * @param distance Height above ground in feet.
+     */
+    public void onDistance(long time, double distance) {
+        if (!mRecording) {
+            return;
+        }
+        mSampleCount++;
+        mTracker.onSample(time, distance);
+        if (mWriter == null) {
+            return;
+        }
+        try {
+            mWriter.write(String.format(Locale.US, "%d,%.2f\n", time - mStartTime, distance));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed writing sample log", e);
+        }
+    }
+
+    @Override
+    public void onApproachFinished(ApproachTracker.Approach approach) {
+        final long startWallTime = mStartWallTime + (approach.startTime - mStartTime);
+        Log.i(TAG, String.format("Approach: min %.2f ft, sink %.2f ft/s, %d ms in final, %d lost samples",
+                approach.minHeight, approach.touchdownSinkRate, approach.finalMs, approach.lostSamples));
+        mCatalog.addApproach(mSessionId, startWallTime, approach);
+    }
+
+    public void stop() {
+        if (!mRecording) {
+            return;
+        }
+        mTracker.finish();
+        mRecording = false;
+        if (mWriter != null) {
+            try {
+                mWriter.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed closing sample log", e);
+            }
+            mWriter = null;
+        }
+        mCatalog.endSession(mSessionId, System.currentTimeMillis(), mSampleCount);
+        Log.i(TAG, String.format("Ended session %d, %d samples", mSessionId, mSampleCount));
+    }
+
+    /**
+     * Stops any session in progress and releases the catalog.
+     */
+    public void close() {
+        stop();
+        mCatalog.close();
+    }
+}
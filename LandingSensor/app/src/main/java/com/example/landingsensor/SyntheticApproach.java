@@ -0,0 +1,79 @@
+package com.example.landingsensor;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates a plausible approach and landing as the sensor would report it: a steady descent
+ * from the top of the sensor's range, a flare, touchdown and a short rollout, with measurement
+ * noise and the occasional burst of missing samples.  Used to exercise the callout logic
+ * without an aircraft.
+ */
+public class SyntheticApproach {
+    public static final double START_HEIGHT_FT = 39.0;
+
+    // Sample times in ms from the start of the approach; missing samples are left out.
+    public final long[] time;
+    // True height above ground of each sample, in feet.
+    public final double[] height;
+    // Height as measured by the sensor, in feet.
+    public final double[] reading;
+
+    private SyntheticApproach(long[] time, double[] height, double[] reading) {
+        this.time = time;
+        this.height = height;
+        this.reading = reading;
+    }
+
+    /**
+     * @param random Source of randomness; the same seed gives the same approach.
+     * @param periodMs Sample period in ms.
+     */
+    public static SyntheticApproach generate(Random random, long periodMs) {
+        // Sink rate on final, in ft/s.
+        final double sinkRate = 3.0 + random.nextDouble() * 9.0;
+        // Height at which the flare starts, and the sink rate it arrests to at touchdown.
+        final double flareHeight = 5.0 + random.nextDouble() * 10.0;
+        final double touchdownSinkRate = 0.5 + random.nextDouble() * 3.0;
+        final double noise = 0.05 + random.nextDouble() * 0.3;
+        // Chance of a sample starting a dropout, and the longest dropout in samples.
+        final double dropoutChance = random.nextDouble() * 0.03;
+        final int maxDropout = 1 + random.nextInt(10);
+        final long rolloutMs = 3000 + random.nextInt(5000);
+
+        final int capacity = (int) ((START_HEIGHT_FT / touchdownSinkRate * 1000 + rolloutMs) / periodMs) + 1;
+        final long[] time = new long[capacity];
+        final double[] height = new double[capacity];
+        final double[] reading = new double[capacity];
+        final double dt = periodMs / 1000.0;
+
+        int count = 0;
+        int dropout = 0;
+        double h = START_HEIGHT_FT;
+        long t = 0;
+        long touchdown = -1;
+        while (touchdown < 0 || t - touchdown < rolloutMs) {
+            if (dropout > 0) {
+                dropout--;
+            } else if (random.nextDouble() < dropoutChance) {
+                dropout = random.nextInt(maxDropout);
+            } else if (count < capacity) {
+                time[count] = t;
+                height[count] = h;
+                reading[count] = Math.max(0, h + random.nextGaussian() * noise);
+                count++;
+            }
+            // Sink rate eases linearly from the final approach rate down to the touchdown
+            // rate through the flare.
+            final double rate = (h > flareHeight) ? sinkRate
+                    : touchdownSinkRate + (sinkRate - touchdownSinkRate) * h / flareHeight;
+            h = Math.max(0, h - rate * dt);
+            if (h == 0 && touchdown < 0) {
+                touchdown = t;
+            }
+            t += periodMs;
+        }
+        return new SyntheticApproach(Arrays.copyOf(time, count), Arrays.copyOf(height, count),
+                Arrays.copyOf(reading, count));
+    }
+}
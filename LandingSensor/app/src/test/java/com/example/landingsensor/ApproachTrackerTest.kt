@@ -0,0 +1,83 @@
+package com.example.landingsensor
+
+import org.junit.Test
+
+import org.junit.Assert.*
+
+class ApproachTrackerTest {
+    private val approaches = ArrayList<ApproachTracker.Approach>()
+    private val tracker = ApproachTracker(ApproachTracker.Listener { approaches.add(it) })
+
+    // Feeds a constant rate descent from 39ft to the ground at 10Hz, then a rollout.
+    private fun land(sinkRate: Double, startTime: Long = 0): Long {
+        var time = startTime
+        var height = 39.0
+        while (height > 0) {
+            tracker.onSample(time, height)
+            time += ApproachTracker.SAMPLE_PERIOD_MS
+            height -= sinkRate * ApproachTracker.SAMPLE_PERIOD_MS / 1000.0
+        }
+        while (time < startTime + 60000) {
+            tracker.onSample(time, 0.0)
+            time += ApproachTracker.SAMPLE_PERIOD_MS
+        }
+        return time
+    }
+
+    @Test
+    fun landing_isSummarized() {
+        land(2.0)
+        assertEquals(1, approaches.size)
+        val approach = approaches[0]
+        assertTrue(approach.landed())
+        assertEquals(0.0, approach.minHeight, 1e-9)
+        assertEquals(2.0, approach.touchdownSinkRate, 0.1)
+        // 10ft at 2ft/s.
+        assertEquals(5000.0, approach.finalMs.toDouble(), 300.0)
+        assertEquals(0, approach.lostSamples)
+    }
+
+    @Test
+    fun goAround_isNotALanding() {
+        var time = 0L
+        for (height in doubleArrayOf(39.0, 30.0, 20.0, 15.0, 20.0, 30.0, 36.0)) {
+            tracker.onSample(time, height)
+            time += ApproachTracker.SAMPLE_PERIOD_MS
+        }
+        assertEquals(1, approaches.size)
+        assertFalse(approaches[0].landed())
+        assertEquals(15.0, approaches[0].minHeight, 1e-9)
+    }
+
+    @Test
+    fun gaps_countLostSamples() {
+        tracker.onSample(0, 39.0)
+        tracker.onSample(100, 25.0)
+        tracker.onSample(600, 20.0)
+        tracker.finish()
+        assertEquals(4, approaches[0].lostSamples)
+    }
+
+    @Test
+    fun startingOnTheGround_isNotAnApproach() {
+        var time = 0L
+        while (time < 10000) {
+            tracker.onSample(time, 0.2)
+            time += ApproachTracker.SAMPLE_PERIOD_MS
+        }
+        tracker.finish()
+        assertTrue(approaches.isEmpty())
+    }
+
+    @Test
+    fun reset_forgetsThePreviousSession() {
+        tracker.onSample(0, 39.0)
+        tracker.onSample(100, 25.0)
+        tracker.reset()
+        tracker.onSample(60000, 0.2)
+        tracker.finish()
+        assertTrue(approaches.isEmpty())
+        land(2.0, 70000)
+        assertEquals(2.0, approaches[0].touchdownSinkRate, 0.1)
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.landingsensor
+
+import org.junit.Test
+
+import org.junit.Assert.*
+
+class CalloutTableTest {
+    @Test
+    fun parse_expandsRanges() {
+        val table = CalloutTable.parse("40, 30, 20, 10, 5-1/1", 0.5f)
+        assertEquals(9, table.size())
+        assertEquals("40", table.label(1))
+        assertEquals("5", table.label(5))
+        assertEquals("1", table.label(9))
+        assertNull(table.label(0))
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun parse_rejectsGarbage() {
+        CalloutTable.parse("40, thirty", 0.5f)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun parse_rejectsHugeHeight() {
+        CalloutTable.parse("1e9", 0.5f)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun evenlySpaced_rejectsHugeRange() {
+        CalloutTable.evenlySpaced(Float.MAX_VALUE, 1f, 0.5f)
+    }
+
+    @Test
+    fun bandFor_descendingEntersAtCalloutHeight() {
+        val table = CalloutTable.parse("40, 30, 20", 0.5f)
+        assertEquals(0, table.bandFor(40.05, 0))
+        assertEquals(1, table.bandFor(40.0, 0))
+        assertEquals(2, table.bandFor(29.5, 1))
+        assertEquals(3, table.bandFor(0.0, 2))
+        assertEquals(3, table.bandFor(-2.0, 3))
+    }
+
+    @Test
+    fun bandFor_hoveringOnBoundaryDoesNotChatter() {
+        val table = CalloutTable.parse("40, 30, 20", 0.5f)
+        var band = table.bandFor(29.9, 1)
+        assertEquals(2, band)
+        for (distance in doubleArrayOf(30.2, 29.8, 30.4, 29.9, 30.1)) {
+            band = table.bandFor(distance, band)
+            assertEquals(2, band)
+        }
+        // Clear of the hysteresis, the band is left.
+        assertEquals(1, table.bandFor(30.6, band))
+    }
+
+    @Test
+    fun evenlySpaced_matchesSensitivitySpacing() {
+        val table = CalloutTable.evenlySpaced(30f, 3f, 0.5f)
+        assertEquals(10, table.size())
+        assertEquals("27", table.label(1))
+        assertEquals("0", table.label(10))
+    }
+
+    @Test
+    fun repeat_saysCurrentHeightNotBand() {
+        val policy = CalloutPolicy(CalloutTable.parse("40, 30, 20, 10", 0.5f))
+        policy.reset(0)
+        policy.setRepeatIntervalMs(3000)
+        assertEquals("20", policy.onSample(19.0, 0, false))
+        // Holding 12 ft, inside the 20 band.
+        assertNull(policy.onSample(12.4, 1000, false))
+        assertNull(policy.onTick(3000, false))
+        assertEquals("12", policy.onTick(4000, false))
+        assertNull(policy.onTick(5000, true))
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.landingsensor
+
+import org.junit.Test
+
+import org.junit.Assert.*
+import java.util.Random
+import kotlin.math.abs
+import kotlin.math.cos
+import kotlin.math.sqrt
+
+/**
+ * Replays a recorded-style flight profile through HeightFusion, with the phone sensors
+ * delivered in 100ms batches after the rangefinder samples they overlap, as on a device.
+ */
+class HeightFusionTest {
+    private fun height(t: Double) = 20 + 10 * cos(0.5 * t)
+    private fun accel(t: Double) = -2.5 * cos(0.5 * t)
+
+    private class Errors {
+        var sumSquares = 0.0
+        var count = 0
+        var maxDuringDropout = 0.0
+        val rms get() = sqrt(sumSquares / count)
+    }
+
+    private fun replay(withPhoneSensors: Boolean): Errors {
+        val random = Random(1)
+        val fusion = HeightFusion()
+        val errors = Errors()
+        val ms = 1_000_000L
+        for (window in 0L until 30_000L step 100) {
+            val t = window / 1000.0
+            val dropout = t >= 10 && t < 12
+            val weakReturn = t >= 20 && t < 21
+            when {
+                dropout -> {}
+                // A weak return reads as garbage; it must be ignored.
+                weakReturn -> fusion.onRange(window * ms, 0.0, 50)
+                else -> fusion.onRange(window * ms, height(t) + random.nextGaussian() * 0.1, 800)
+            }
+            if (withPhoneSensors) {
+                for (i in window - 80..window step 20) {
+                    if (i >= 0) fusion.onAcceleration(i * ms, accel(i / 1000.0) + random.nextGaussian() * 0.5)
+                }
+                fusion.onPressureAltitude(window * ms, 500 + height(t) + random.nextGaussian() * 1.5)
+            }
+            val now = window + 5
+            if (fusion.estimate(now * ms)) {
+                val error = fusion.height - height(now / 1000.0)
+                errors.sumSquares += error * error
+                errors.count++
+                if (dropout) errors.maxDuringDropout = maxOf(errors.maxDuringDropout, abs(error))
+            }
+        }
+        return errors
+    }
+
+    @Test
+    fun tracksHeightAndBridgesDropouts() {
+        val errors = replay(true)
+        assertEquals(300, errors.count)
+        assertTrue("rms ${errors.rms}", errors.rms < 0.2)
+        assertTrue("dropout ${errors.maxDuringDropout}", errors.maxDuringDropout < 1.0)
+    }
+
+    @Test
+    fun rangefinderAloneGoesInvalidInDropouts() {
+        val errors = replay(false)
+        assertTrue(errors.count < 300)
+    }
+
+    @Test
+    fun baroBetweenHeldRangeSamples_keepsTimeOrder() {
+        // Descending steadily at 10ft/s.  The accelerometer arrives in 300ms batches, so range
+        // samples are held while baro readings, each 50ms after a range sample, arrive promptly.
+        fun truth(ms: Long) = 38 - 10 * ms / 1000.0
+        val fusion = HeightFusion()
+        val ms = 1_000_000L
+        var maxError = 0.0
+        for (window in 0L until 3000L step 100) {
+            fusion.onRange(window * ms, truth(window), 800)
+            fusion.onPressureAltitude((window + 50) * ms, 500 + truth(window + 50))
+            if (window % 300 == 200L) {
+                for (i in window - 280..window + 60 step 20) {
+                    if (i >= 0) fusion.onAcceleration(i * ms, 0.0)
+                }
+            }
+            // Skip the first second while the speed estimate converges.
+            if (window >= 1000 && fusion.estimate((window + 60) * ms)) {
+                maxError = maxOf(maxError, abs(fusion.height - truth(window + 60)))
+            }
+        }
+        assertTrue("max error $maxError", maxError < 0.1)
+    }
+
+    @Test
+    fun pressureAltitude_seaLevelIsZero() {
+        assertEquals(0.0, HeightFusion.pressureAltitude(1013.25), 1e-6)
+        assertEquals(1000.0, HeightFusion.pressureAltitude(977.2), 5.0)
+    }
+}
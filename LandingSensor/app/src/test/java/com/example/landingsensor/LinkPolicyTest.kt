@@ -0,0 +1,43 @@
+package com.example.landingsensor
+
+import org.junit.Test
+
+import org.junit.Assert.*
+
+class LinkPolicyTest {
+    @Test
+    fun goesHighNearTheGroundAndRelaxesInSteps() {
+        val policy = LinkPolicy()
+        policy.reset(0)
+        assertEquals(LinkPolicy.MODE_BALANCED, policy.mode)
+        // Above the entry threshold nothing changes.
+        assertEquals(-1, policy.onDistance(100, 37.0))
+        assertEquals(LinkPolicy.MODE_HIGH, policy.onDistance(200, 30.0))
+        // Hysteresis keeps it high just above the entry threshold.
+        assertEquals(-1, policy.onDistance(300, 37.5))
+        assertEquals(-1, policy.onTick(300 + LinkPolicy.HIGH_HOLD_MS - 1))
+        assertEquals(LinkPolicy.MODE_BALANCED, policy.onTick(300 + LinkPolicy.HIGH_HOLD_MS))
+        assertEquals(-1, policy.onTick(300 + LinkPolicy.BALANCED_HOLD_MS - 1))
+        assertEquals(LinkPolicy.MODE_LOW_POWER, policy.onTick(300 + LinkPolicy.BALANCED_HOLD_MS))
+        // Straight back to high on the next approach.
+        assertEquals(LinkPolicy.MODE_HIGH, policy.onDistance(120000, 20.0))
+    }
+
+    @Test
+    fun statsMeasureJitterPerMode() {
+        val stats = LinkStats()
+        stats.onConnected()
+        stats.setMode(LinkPolicy.MODE_HIGH)
+        stats.onConnectionUpdated(7.5)
+        var t = 0L
+        for (i in 0 until 10) {
+            // Alternate early and late by 5ms; one missing sample in the middle.
+            t += if (i == 5) 200 else 100
+            stats.onNotification(t + if (i % 2 == 0) 5 else -5)
+        }
+        assertEquals(10, stats.getNotifications(LinkPolicy.MODE_HIGH))
+        assertEquals(3.75, stats.expectedLatencyMs, 1e-9)
+        assertTrue(stats.getJitterMs(LinkPolicy.MODE_HIGH) > 9.0 && stats.getJitterMs(LinkPolicy.MODE_HIGH) <= 10.0)
+        assertTrue(stats.getJitterMs(LinkPolicy.MODE_LOW_POWER).isNaN())
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.landingsensor
+
+import org.junit.Test
+
+import org.junit.Assert.*
+
+class SampleHistoryTest {
+    private fun height(i: Int) = (20 + 15 * Math.sin(i / 3000.0)).toFloat()
+
+    // Three hours at 10Hz, starting at an arbitrary clock.
+    private fun longSession(): SampleHistory {
+        val history = SampleHistory()
+        for (i in 0 until 3 * 3600 * 10) {
+            history.append(SampleHistory.DISTANCE, 5000L + i * 100L, height(i))
+        }
+        return history
+    }
+
+    @Test
+    fun wholeSessionKeepsTheEnvelope() {
+        val history = longSession()
+        val min = FloatArray(500)
+        val max = FloatArray(500)
+        val level = history.query(SampleHistory.DISTANCE, history.startTime, history.endTime + 1, min, max)
+        // About one bucket per column.
+        assertTrue(history.getBucketWidthMs(level) <= (history.endTime - history.startTime) / 500)
+        assertTrue(history.getBucketWidthMs(level) * SampleHistory.FANOUT > (history.endTime - history.startTime) / 500)
+        assertTrue(min.none { it.isNaN() })
+        assertEquals(5.0f, min.minOrNull()!!, 1e-3f)
+        assertEquals(35.0f, max.maxOrNull()!!, 1e-3f)
+        for (i in min.indices) {
+            assertTrue(min[i] <= max[i])
+        }
+    }
+
+    @Test
+    fun recentRangeIsFullResolution() {
+        val history = longSession()
+        val min = FloatArray(100)
+        val max = FloatArray(100)
+        val end = history.endTime + 1
+        assertEquals(0, history.query(SampleHistory.DISTANCE, end - 10000, end, min, max))
+        // One 100ms sample per column; the last is the last sample.
+        assertEquals(height(3 * 3600 * 10 - 1), min[99], 0f)
+        assertEquals(min[99], max[99], 0f)
+    }
+
+    @Test
+    fun evictedRangeFallsBackToCoarserLevel() {
+        val history = longSession()
+        val min = FloatArray(100)
+        val max = FloatArray(100)
+        val level = history.query(SampleHistory.DISTANCE, history.startTime, history.startTime + 10000, min, max)
+        assertTrue(level > 0)
+        // Coarse buckets are wider than a column, and still cover every column they span.
+        assertTrue(history.getBucketWidthMs(level) > 100)
+        assertTrue(min.none { it.isNaN() })
+        assertEquals(height(0), min[0], 1e-3f)
+    }
+
+    @Test
+    fun channelsAndGapsAreIndependent() {
+        val history = SampleHistory(100, 16)
+        history.append(SampleHistory.FLUX, 0, 800f)
+        history.append(SampleHistory.STATUS, 0, SampleHistory.statusCode("Pass").toFloat())
+        history.append(SampleHistory.STATUS, 50, SampleHistory.statusCode("Timeout").toFloat())
+        // A dropout, then one more reading.
+        history.append(SampleHistory.FLUX, 900, 400f)
+        val min = FloatArray(10)
+        val max = FloatArray(10)
+        history.query(SampleHistory.FLUX, 0, 1000, min, max)
+        assertEquals(800f, min[0], 0f)
+        assertTrue(min[4].isNaN())
+        assertEquals(400f, max[9], 0f)
+        history.query(SampleHistory.STATUS, 0, 1000, min, max)
+        assertEquals("Timeout", SampleHistory.statusText(max[0].toInt()))
+        // Nothing was recorded on distance.
+        history.query(SampleHistory.DISTANCE, 0, 1000, min, max)
+        assertTrue(min.all { it.isNaN() })
+    }
+
+    @Test
+    fun statusCodesOrderBySeverity() {
+        assertTrue(SampleHistory.statusCode("Ready") < SampleHistory.statusCode("Timeout"))
+        assertTrue(SampleHistory.statusCode("Timeout") < SampleHistory.statusCode("Fail"))
+        assertEquals("Unknown", SampleHistory.statusText(SampleHistory.statusCode("UNKNOWN")))
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.landingsensor
+
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.async
+import kotlinx.coroutines.flow.take
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import kotlinx.coroutines.yield
+import org.junit.Test
+
+import org.junit.Assert.*
+
+class SampleStreamTest {
+    private fun sample(i: Int) = Sample.EMPTY.with(i.toLong(), Sample.DISTANCE, i.toDouble())
+
+    private fun collectAfterBurst(policy: SampleStream.Policy, burst: Int, expected: Int): List<Sample> = runBlocking {
+        val stream = SampleStream()
+        // Subscribe, then publish the whole burst before the subscriber gets to run, as a
+        // consumer that has fallen behind would see it.
+        val result = async(start = CoroutineStart.UNDISPATCHED) {
+            stream.samples(policy).take(expected).toList()
+        }
+        while (stream.subscriberCount == 0) yield()
+        for (i in 0 until burst) stream.publish(sample(i))
+        withTimeout(5_000) { result.await() }
+    }
+
+    @Test
+    fun lossless_deliversEverySample() {
+        val samples = collectAfterBurst(SampleStream.Policy.LOSSLESS, 10_000, 10_000)
+        assertEquals((0 until 10_000).map { it.toLong() }, samples.map { it.timeMs })
+    }
+
+    @Test
+    fun latest_keepsOnlyTheNewest() {
+        val samples = collectAfterBurst(SampleStream.Policy.LATEST, 1_000, 1)
+        assertEquals(999L, samples.single().timeMs)
+    }
+
+    @Test
+    fun dropOldest_keepsTheNewestFew() {
+        val samples = collectAfterBurst(SampleStream.Policy.dropOldest(8), 1_000, 8)
+        assertEquals((992 until 1_000).map { it.toLong() }, samples.map { it.timeMs })
+    }
+
+    @Test
+    fun publish_withoutSubscribersIsANoOp() {
+        val stream = SampleStream()
+        stream.publish(sample(1))
+        assertEquals(0, stream.subscriberCount)
+    }
+
+    @Test
+    fun sample_carriesOtherChannelsForward() {
+        val withFlux = Sample.EMPTY.with(5, Sample.FLUX, flux = 900)
+        val withDistance = withFlux.with(6, Sample.DISTANCE, distance = 12.5)
+        assertEquals(900, withDistance.flux)
+        assertEquals(6L, withDistance.distanceTimeMs)
+        assertEquals(6L, withDistance.with(7, Sample.TEMP, temp = 25.0).distanceTimeMs)
+        assertEquals(-1L, withFlux.distanceTimeMs)
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.landingsensor.macrobenchmark
+
+import androidx.benchmark.macro.ExperimentalBaselineProfilesApi
+import androidx.benchmark.macro.junit4.BaselineProfileRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Collects the baseline profile for startup and the sample hot path.  Needs a rooted device
+ * or emulator image; copy the generated profile over app/src/main/baseline-prof.txt:
+ *
+ *   ./gradlew :macrobenchmark:connectedBenchmarkAndroidTest \
+ *       -P android.testInstrumentationRunnerArguments.class=com.example.landingsensor.macrobenchmark.BaselineProfileGenerator
+ */
+@OptIn(ExperimentalBaselineProfilesApi::class)
+@RunWith(AndroidJUnit4::class)
+class BaselineProfileGenerator {
+    @get:Rule
+    val baselineProfileRule = BaselineProfileRule()
+
+    @Test
+    fun generate() = baselineProfileRule.collectBaselineProfile(packageName = TARGET_PACKAGE) {
+        pressHome()
+        startSimulated()
+        streamSamples()
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.landingsensor.macrobenchmark
+
+import androidx.benchmark.macro.BaselineProfileMode
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.FrameTimingMetric
+import androidx.benchmark.macro.StartupMode
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Frame timing of the main screen while simulated samples stream through the whole pipeline,
+ * from decode in BluetoothLeService to the speech decision.  Each iteration's Perfetto trace
+ * is saved with the results; the "LS ..." sections in it break the time down by stage.
+ */
+@RunWith(AndroidJUnit4::class)
+class SampleStreamBenchmark {
+    @get:Rule
+    val benchmarkRule = MacrobenchmarkRule()
+
+    @Test
+    fun sampleStream() = benchmarkRule.measureRepeated(
+        packageName = TARGET_PACKAGE,
+        metrics = listOf(FrameTimingMetric()),
+        compilationMode = CompilationMode.Partial(BaselineProfileMode.Require),
+        startupMode = StartupMode.WARM,
+        iterations = 5,
+        setupBlock = { pressHome() }
+    ) {
+        startSimulated()
+        streamSamples()
+    }
+}
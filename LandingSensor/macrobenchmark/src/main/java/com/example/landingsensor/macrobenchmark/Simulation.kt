@@ -0,0 +1,31 @@
+package com.example.landingsensor.macrobenchmark
+
+import android.content.Intent
+import androidx.benchmark.macro.MacrobenchmarkScope
+import androidx.test.uiautomator.By
+import androidx.test.uiautomator.Until
+
+const val TARGET_PACKAGE = "com.example.landingsensor"
+
+// How long to let simulated samples stream per iteration: 100 samples at 10Hz.
+const val STREAM_MS = 10_000L
+
+/**
+ * Starts the main screen fed by the app's sample simulator rather than a sensor, so runs are
+ * unattended and see the same samples every time.
+ */
+fun MacrobenchmarkScope.startSimulated() {
+    val intent = Intent()
+    intent.setClassName(TARGET_PACKAGE, "$TARGET_PACKAGE.DeviceControlActivity")
+    // DeviceControlActivity.EXTRAS_SIMULATE
+    intent.putExtra("SIMULATE", true)
+    startActivityAndWait(intent)
+}
+
+/**
+ * Waits until simulated samples are on screen, then lets them stream.
+ */
+fun MacrobenchmarkScope.streamSamples() {
+    device.wait(Until.hasObject(By.res(TARGET_PACKAGE, "dist_value").textContains("ft")), 5_000)
+    Thread.sleep(STREAM_MS)
+}
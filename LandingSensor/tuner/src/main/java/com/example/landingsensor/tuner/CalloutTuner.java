@@ -0,0 +1,290 @@
+package com.example.landingsensor.tuner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Command line tool that replays recorded or synthetic sessions through the app's callout
+ * logic across a grid of settings, in parallel, and ranks the settings.
+ *
+ * Each config is scored (lower is better) as a weighted sum of missed callouts per session,
+ * mean staleness of the last callout in feet, and callouts per session:
+ *
+ *   gradle :tuner:run --args="--synthetic 2000 --sensitivity 0:4:1 --repeat 0,5"
+ *
+ * Run with {@code --help} for all options.
+ */
+public class CalloutTuner {
+    private static final String USAGE = String.join("\n",
+            "Usage: CalloutTuner [options]",
+            "  --sessions PATH        Sample log (.csv) or directory of logs to replay; repeatable",
+            "  --synthetic N          Number of synthetic approaches (default 1000 without --sessions)",
+            "  --seed N               Seed for synthetic approaches (default 1)",
+            "  --sensor-offset FT     What the sensor reads on the ground, for synthetic approaches (default 0)",
+            "  --tables SPEC;SPEC     Callout tables to try instead of --sensitivity/--max-distance",
+            "  --sensitivity LIST     Distance sensitivity values (default 0:4:1)",
+            "  --max-distance LIST    Max spoken distance values (default 20:40:5)",
+            "  --hysteresis LIST      Callout hysteresis values in ft (default 0,0.25,0.5,1)",
+            "  --offset LIST          Distance offset values in ft (default 0)",
+            "  --repeat LIST          Repeat intervals in s, 0 for off (default 0,3,5,10)",
+            "  --stale-timeout LIST   Watchdog timeouts in ms (default 250)",
+            "  --eval-ceiling FT      Measure staleness below this height (default 30)",
+            "  --weights M,S,C        Score weights for missed, staleness and callouts (default 5,1,0.2)",
+            "  --top N                Number of configs to print (default 10)",
+            "  --threads N            Worker threads (default: all cores)",
+            "  --out FILE             Write every config's metrics to a CSV file",
+            "",
+            "LIST is comma separated values and/or START:END:STEP ranges, e.g. 0,0.5:2:0.5");
+
+    private static final long SAMPLE_PERIOD_MS = 100;
+
+    public static void main(String[] args) {
+        try {
+            run(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void run(String[] args) throws IOException {
+        final List<File> sessionPaths = new ArrayList<>();
+        int synthetic = -1;
+        long seed = 1;
+        double sensorOffset = 0;
+        String tables = null;
+        String sensitivities = "0:4:1";
+        String maxDistances = "20:40:5";
+        String hystereses = "0,0.25,0.5,1";
+        String offsets = "0";
+        String repeats = "0,3,5,10";
+        String staleTimeouts = "250";
+        double ceiling = 30;
+        double[] weights = {5, 1, 0.2};
+        int top = 10;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File out = null;
+
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (arg.equals("--help") || arg.equals("-h")) {
+                System.out.println(USAGE);
+                return;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            final String value = args[++i];
+            switch (arg) {
+                case "--sessions": sessionPaths.add(new File(value)); break;
+                case "--synthetic": synthetic = Integer.parseInt(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--sensor-offset": sensorOffset = Double.parseDouble(value); break;
+                case "--tables": tables = value; break;
+                case "--sensitivity": sensitivities = value; break;
+                case "--max-distance": maxDistances = value; break;
+                case "--hysteresis": hystereses = value; break;
+                case "--offset": offsets = value; break;
+                case "--repeat": repeats = value; break;
+                case "--stale-timeout": staleTimeouts = value; break;
+                case "--eval-ceiling": ceiling = Double.parseDouble(value); break;
+                case "--weights": weights = parseList(value); break;
+                case "--top": top = Integer.parseInt(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--out": out = new File(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (weights.length != 3) {
+            throw new IllegalArgumentException("--weights needs three values");
+        }
+
+        final List<Session> sessions = new ArrayList<>();
+        for (File path : sessionPaths) {
+            loadSessions(path, sessions);
+        }
+        if (synthetic < 0 && sessions.isEmpty()) {
+            synthetic = 1000;
+        }
+        final Random random = new Random(seed);
+        for (int i = 0; i < synthetic; i++) {
+            sessions.add(Session.synthetic("synthetic-" + i, random, SAMPLE_PERIOD_MS, sensorOffset));
+        }
+        if (sessions.isEmpty()) {
+            throw new IllegalArgumentException("No sessions to replay");
+        }
+
+        final List<TuningConfig> configs = buildGrid(tables, parseList(sensitivities),
+                parseList(maxDistances), parseList(hystereses), parseList(offsets),
+                parseList(repeats), parseList(staleTimeouts));
+        System.out.printf(Locale.US, "Replaying %d sessions x %d configs on %d threads%n",
+                sessions.size(), configs.size(), threads);
+
+        final long start = System.nanoTime();
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        final double[] metrics;
+        try {
+            metrics = pool.invoke(new SweepTask(configs, sessions, ceiling));
+        } finally {
+            pool.shutdown();
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.US, "%d replays in %.2f s (%.0f replays/s)%n",
+                (long) sessions.size() * configs.size(), seconds,
+                sessions.size() * (double) configs.size() / seconds);
+
+        final double[] scores = new double[configs.size()];
+        for (int c = 0; c < configs.size(); c++) {
+            scores[c] = score(metrics, c, weights);
+        }
+        final Integer[] order = new Integer[configs.size()];
+        for (int c = 0; c < order.length; c++) order[c] = c;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(scores[a], scores[b]);
+            }
+        });
+
+        System.out.println();
+        System.out.println(" rank    score  missed/ses  stale_ft  callouts/ses  config");
+        for (int r = 0; r < Math.min(top, order.length); r++) {
+            final int c = order[r];
+            final int m = c * Replay.METRIC_COUNT;
+            System.out.printf(Locale.US, "%5d %8.3f %11.3f %9.3f %13.2f  %s%n", r + 1, scores[c],
+                    metrics[m + Replay.MISSED_BANDS] / metrics[m + Replay.SESSIONS],
+                    staleness(metrics, m),
+                    metrics[m + Replay.CALLOUTS] / metrics[m + Replay.SESSIONS],
+                    configs.get(c));
+        }
+
+        if (out != null) {
+            try (PrintWriter writer = new PrintWriter(out, "UTF-8")) {
+                writer.println(TuningConfig.csvHeader() + ",score,missed_per_session,staleness_ft,callouts_per_session");
+                for (int c : order) {
+                    final int m = c * Replay.METRIC_COUNT;
+                    writer.printf(Locale.US, "%s,%.4f,%.4f,%.4f,%.4f%n", configs.get(c).toCsv(), scores[c],
+                            metrics[m + Replay.MISSED_BANDS] / metrics[m + Replay.SESSIONS],
+                            staleness(metrics, m),
+                            metrics[m + Replay.CALLOUTS] / metrics[m + Replay.SESSIONS]);
+                }
+            }
+            System.out.println("Wrote " + out);
+        }
+    }
+
+    private static double staleness(double[] metrics, int m) {
+        final double inRange = metrics[m + Replay.IN_RANGE];
+        return (inRange > 0) ? metrics[m + Replay.STALENESS] / inRange : 0;
+    }
+
+    private static double score(double[] metrics, int c, double[] weights) {
+        final int m = c * Replay.METRIC_COUNT;
+        final double sessions = metrics[m + Replay.SESSIONS];
+        return weights[0] * metrics[m + Replay.MISSED_BANDS] / sessions
+                + weights[1] * staleness(metrics, m)
+                + weights[2] * metrics[m + Replay.CALLOUTS] / sessions;
+    }
+
+    private static void loadSessions(File path, List<Session> sessions) throws IOException {
+        if (path.isDirectory()) {
+            final File[] files = path.listFiles();
+            if (files == null) {
+                throw new IOException("Unable to list " + path);
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.getName().endsWith(".csv")) {
+                    sessions.add(Session.load(file));
+                }
+            }
+        } else {
+            sessions.add(Session.load(path));
+        }
+    }
+
+    private static List<TuningConfig> buildGrid(String tables, double[] sensitivities,
+                                                double[] maxDistances, double[] hystereses,
+                                                double[] offsets, double[] repeats,
+                                                double[] staleTimeouts) {
+        final List<String> specs = new ArrayList<>();
+        if (tables != null) {
+            for (String spec : tables.split(";")) {
+                if (!spec.trim().isEmpty()) specs.add(spec.trim());
+            }
+        }
+        if (specs.isEmpty()) {
+            // null means "use sensitivity and max distance".
+            specs.add(null);
+        }
+
+        final List<TuningConfig> configs = new ArrayList<>();
+        for (String spec : specs) {
+            final double[] sens = (spec != null) ? new double[]{0} : sensitivities;
+            final double[] maxes = (spec != null) ? new double[]{0} : maxDistances;
+            for (double sensitivity : sens)
+                for (double maxDistance : maxes)
+                    for (double hysteresis : hystereses)
+                        for (double offset : offsets)
+                            for (double repeat : repeats)
+                                for (double staleTimeout : staleTimeouts) {
+                                    configs.add(new TuningConfig(spec, (float) sensitivity,
+                                            (float) maxDistance, (float) hysteresis, offset,
+                                            Math.round(repeat * 1000), Math.round(staleTimeout)));
+                                }
+        }
+        return Collections.unmodifiableList(configs);
+    }
+
+    /**
+     * Parses comma separated values and START:END:STEP ranges.
+     */
+    static double[] parseList(String text) {
+        final List<Double> values = new ArrayList<>();
+        for (String item : text.split(",")) {
+            item = item.trim();
+            if (item.isEmpty()) continue;
+            try {
+                final String[] parts = item.split(":");
+                if (parts.length == 1) {
+                    values.add(Double.parseDouble(item));
+                } else if (parts.length == 3) {
+                    final double from = Double.parseDouble(parts[0]);
+                    final double to = Double.parseDouble(parts[1]);
+                    final double step = Double.parseDouble(parts[2]);
+                    if (step <= 0) {
+                        throw new IllegalArgumentException("Range step must be positive: " + item);
+                    }
+                    // Count steps rather than accumulating, to avoid float drift.
+                    final long steps = (long) Math.floor((to - from) / step + 1e-9);
+                    for (long s = 0; s <= steps; s++) {
+                        values.add(from + s * step);
+                    }
+                } else {
+                    throw new IllegalArgumentException("Bad range: " + item);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad number in " + item);
+            }
+        }
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("Empty value list: " + text);
+        }
+        final double[] result = new double[values.size()];
+        for (int i = 0; i < result.length; i++) result[i] = values.get(i);
+        return result;
+    }
+}
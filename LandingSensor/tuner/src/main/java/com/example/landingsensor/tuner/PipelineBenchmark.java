@@ -0,0 +1,177 @@
+package com.example.landingsensor.tuner;
+
+import com.example.landingsensor.CalloutPolicy;
+import com.example.landingsensor.CalloutTable;
+import com.example.landingsensor.HeightFusion;
+import com.example.landingsensor.SyntheticApproach;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Times the Android-free stages of the per-sample pipeline on the JVM, so their cost can be
+ * tracked across builds without a device:
+ *
+ *   gradle :tuner:benchmarkPipeline --args="--label my-change --out pipeline.csv"
+ *
+ * Stages run over the same seeded synthetic approaches every time.  Each round replays all of
+ * them through one stage; the median round is reported in ns per sample.  Device-side costs
+ * (broadcast, views, speech) are measured by the macrobenchmark module instead.
+ */
+public class PipelineBenchmark {
+    private static final String USAGE = String.join("\n",
+            "Usage: PipelineBenchmark [options]",
+            "  --approaches N         Synthetic approaches per round (default 500)",
+            "  --rounds N             Measured rounds per stage (default 15)",
+            "  --warmup N             Unmeasured rounds per stage (default 5)",
+            "  --label TEXT           Build label for --out (default \"local\")",
+            "  --out FILE             Append results to a CSV file");
+
+    private static final long SAMPLE_PERIOD_MS = 100;
+    private static final long SEED = 1;
+
+    private interface Stage {
+        // Returns something derived from the work so it can't be optimized away.
+        double run(SyntheticApproach approach);
+    }
+
+    public static void main(String[] args) {
+        try {
+            run(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void run(String[] args) throws IOException {
+        int approachCount = 500;
+        int rounds = 15;
+        int warmup = 5;
+        String label = "local";
+        File out = null;
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (arg.equals("--help") || arg.equals("-h")) {
+                System.out.println(USAGE);
+                return;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            final String value = args[++i];
+            switch (arg) {
+                case "--approaches": approachCount = Integer.parseInt(value); break;
+                case "--rounds": rounds = Integer.parseInt(value); break;
+                case "--warmup": warmup = Integer.parseInt(value); break;
+                case "--label": label = value; break;
+                case "--out": out = new File(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (approachCount < 1 || rounds < 1 || warmup < 0) {
+            throw new IllegalArgumentException("Counts must be positive");
+        }
+
+        final Random random = new Random(SEED);
+        final SyntheticApproach[] approaches = new SyntheticApproach[approachCount];
+        long samples = 0;
+        for (int i = 0; i < approachCount; i++) {
+            approaches[i] = SyntheticApproach.generate(random, SAMPLE_PERIOD_MS);
+            samples += approaches[i].time.length;
+        }
+
+        final CalloutPolicy policy = new CalloutPolicy(CalloutTable.forSensitivity(30, 2, CalloutTable.DEFAULT_HYSTERESIS));
+        final HeightFusion fusion = new HeightFusion();
+        final String[] names = {"speech_decision", "format", "fusion"};
+        final Stage[] stages = {
+                new Stage() {
+                    @Override
+                    public double run(SyntheticApproach approach) {
+                        policy.reset(approach.time[0]);
+                        int callouts = 0;
+                        for (int i = 0; i < approach.time.length; i++) {
+                            if (policy.onSample(approach.reading[i], approach.time[i], false) != null) {
+                                callouts++;
+                            }
+                        }
+                        return callouts;
+                    }
+                },
+                new Stage() {
+                    @Override
+                    public double run(SyntheticApproach approach) {
+                        // What DeviceControlActivity formats for every sample.
+                        int length = 0;
+                        for (int i = 0; i < approach.time.length; i++) {
+                            length += String.format("%.2f ft", approach.reading[i]).length();
+                            length += String.format("%.2f C", 25.0).length();
+                        }
+                        return length;
+                    }
+                },
+                new Stage() {
+                    @Override
+                    public double run(SyntheticApproach approach) {
+                        fusion.reset();
+                        double sum = 0;
+                        for (int i = 0; i < approach.time.length; i++) {
+                            final long time = approach.time[i] * 1000000L;
+                            fusion.onRange(time, approach.reading[i], 800);
+                            if (fusion.estimate(time)) {
+                                sum += fusion.getHeight();
+                            }
+                        }
+                        return sum;
+                    }
+                },
+        };
+
+        System.out.printf(Locale.US, "%d approaches, %d samples per round%n", approachCount, samples);
+        final double[] results = new double[stages.length];
+        double sink = 0;
+        for (int s = 0; s < stages.length; s++) {
+            final double[] nsPerSample = new double[rounds];
+            for (int r = -warmup; r < rounds; r++) {
+                final long start = System.nanoTime();
+                for (SyntheticApproach approach : approaches) {
+                    sink += stages[s].run(approach);
+                }
+                if (r >= 0) {
+                    nsPerSample[r] = (System.nanoTime() - start) / (double) samples;
+                }
+            }
+            Arrays.sort(nsPerSample);
+            results[s] = nsPerSample[rounds / 2];
+            System.out.printf(Locale.US, "%-16s %10.1f ns/sample (min %.1f, max %.1f)%n", names[s],
+                    results[s], nsPerSample[0], nsPerSample[rounds - 1]);
+        }
+        // Keeps the JIT honest.
+        if (sink == 42) {
+            System.out.println();
+        }
+
+        if (out != null) {
+            final boolean header = !out.exists();
+            try (PrintWriter writer = new PrintWriter(new FileWriter(out, true))) {
+                if (header) {
+                    writer.println("label,java_version,stage,ns_per_sample");
+                }
+                for (int s = 0; s < stages.length; s++) {
+                    writer.printf(Locale.US, "%s,%s,%s,%.2f%n", label,
+                            System.getProperty("java.version"), names[s], results[s]);
+                }
+            }
+            System.out.println("Appended to " + out);
+        }
+    }
+}
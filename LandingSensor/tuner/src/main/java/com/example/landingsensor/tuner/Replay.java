@@ -0,0 +1,116 @@
+package com.example.landingsensor.tuner;
+
+import com.example.landingsensor.CalloutPolicy;
+import com.example.landingsensor.CalloutTable;
+
+/**
+ * Replays a session through {@code CalloutPolicy} exactly as {@code DeviceControlActivity}
+ * drives it (samples as they arrive, plus the repeat tick), and accumulates metrics about
+ * what the pilot would have heard.
+ *
+ * A Replay holds scratch state for one config and is reused across sessions, so replaying
+ * allocates nothing.
+ */
+public class Replay {
+    // Indices into the metrics accumulated per config.
+    public static final int CALLOUTS = 0;
+    public static final int MISSED_BANDS = 1;
+    // Integral over time of |true height - last height called out|, in ft*s, while below the
+    // evaluation ceiling.
+    public static final int STALENESS = 2;
+    // Time spent below the evaluation ceiling, in s.
+    public static final int IN_RANGE = 3;
+    public static final int SESSIONS = 4;
+    public static final int METRIC_COUNT = 5;
+
+    private final TuningConfig mConfig;
+    private final double mCeiling;
+    private final CalloutTable mTable;
+    private final CalloutPolicy mPolicy;
+    // Per band: how often the true height descended into it, and how often it was called.
+    private final int[] mDue;
+    private final int[] mCalled;
+    private double mLastSpoken;
+
+    /**
+     * @param ceiling Height in feet below which staleness is measured.  It's the same for
+     *                every config so that tables of different heights compare fairly.
+     */
+    public Replay(TuningConfig config, double ceiling) {
+        mConfig = config;
+        mCeiling = ceiling;
+        mTable = config.table;
+        mPolicy = new CalloutPolicy(mTable);
+        mPolicy.setRepeatIntervalMs(config.repeatIntervalMs);
+        mDue = new int[mTable.size() + 1];
+        mCalled = new int[mTable.size() + 1];
+    }
+
+    /**
+     * Replays one session and adds its metrics to {@code metrics[offset..offset+METRIC_COUNT)}.
+     */
+    public void run(Session session, double[] metrics, int offset) {
+        final long[] time = session.time;
+        if (time.length == 0) {
+            return;
+        }
+        final double top = mTable.height(1);
+        for (int i = 0; i < mDue.length; i++) {
+            mDue[i] = 0;
+            mCalled[i] = 0;
+        }
+        mPolicy.reset(time[0]);
+        // Before the first callout the pilot only knows they're above the table.
+        mLastSpoken = top;
+        int truthBand = 0;
+        int callouts = 0;
+        double staleness = 0;
+        double inRange = 0;
+        long nextTick = time[0] + CalloutPolicy.TICK_MS;
+
+        for (int i = 0; i < time.length; i++) {
+            final long t = time[i];
+            if (i > 0) {
+                // Repeat ticks that fell between samples; data is stale once the watchdog
+                // deadline after the previous sample has passed.
+                while (nextTick < t) {
+                    final boolean stale = nextTick - time[i - 1] > mConfig.staleTimeoutMs;
+                    if (mPolicy.onTick(nextTick, stale) != null) {
+                        callouts++;
+                        mLastSpoken = CalloutPolicy.repeatHeight(mPolicy.getLastDistance());
+                    }
+                    nextTick += CalloutPolicy.TICK_MS;
+                }
+                // The pilot's picture of the height holds until this sample.
+                final double truth = session.truth[i - 1];
+                if (truth <= mCeiling) {
+                    final double dt = (t - time[i - 1]) / 1000.0;
+                    staleness += Math.abs(truth - mLastSpoken) * dt;
+                    inRange += dt;
+                }
+            }
+
+            final int band = mTable.bandFor(session.truth[i], truthBand);
+            for (int b = truthBand + 1; b <= band; b++) {
+                mDue[b]++;
+            }
+            truthBand = band;
+
+            if (mPolicy.onSample(session.raw[i] - mConfig.offset, t, false) != null) {
+                callouts++;
+                mCalled[mPolicy.getBand()]++;
+                mLastSpoken = mTable.height(mPolicy.getBand());
+            }
+        }
+
+        int missed = 0;
+        for (int b = 1; b < mDue.length; b++) {
+            missed += Math.max(0, mDue[b] - mCalled[b]);
+        }
+        metrics[offset + CALLOUTS] += callouts;
+        metrics[offset + MISSED_BANDS] += missed;
+        metrics[offset + STALENESS] += staleness;
+        metrics[offset + IN_RANGE] += inRange;
+        metrics[offset + SESSIONS] += 1;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.landingsensor.tuner;
+
+import com.example.landingsensor.SyntheticApproach;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A sequence of distance samples to replay, with the true height where it's known.
+ */
+public class Session {
+    public final String name;
+    // Sample times in ms.
+    public final long[] time;
+    // What the sensor reported, before the distance offset is applied, in feet.
+    public final double[] raw;
+    // Best known true height, in feet.
+    public final double[] truth;
+
+    public Session(String name, long[] time, double[] raw, double[] truth) {
+        this.name = name;
+        this.time = time;
+        this.raw = raw;
+        this.truth = truth;
+    }
+
+    /**
+     * Loads a sample log written by the app's {@code SessionRecorder}.  Recorded distances
+     * already have the app's offset applied and are the only estimate of the truth, so
+     * offsets are swept relative to whatever was configured when recording.
+     */
+    public static Session load(File file) throws IOException {
+        long[] time = new long[1024];
+        double[] distance = new double[1024];
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int comma = line.indexOf(',');
+                if (comma < 0 || !Character.isDigit(line.charAt(0))) {
+                    // Header or blank line.
+                    continue;
+                }
+                if (count == time.length) {
+                    time = Arrays.copyOf(time, count * 2);
+                    distance = Arrays.copyOf(distance, count * 2);
+                }
+                time[count] = Long.parseLong(line.substring(0, comma));
+                distance[count] = Double.parseDouble(line.substring(comma + 1).trim());
+                count++;
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed sample log " + file + ": " + e.getMessage(), e);
+        }
+        final double[] samples = Arrays.copyOf(distance, count);
+        return new Session(file.getName(), Arrays.copyOf(time, count), samples, samples);
+    }
+
+    /**
+     * Generates a synthetic approach.
+     *
+     * @param sensorOffset Distance the sensor reads when the aircraft is on the ground.
+     */
+    public static Session synthetic(String name, Random random, long periodMs, double sensorOffset) {
+        final SyntheticApproach approach = SyntheticApproach.generate(random, periodMs);
+        final double[] raw = new double[approach.reading.length];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = approach.reading[i] + sensorOffset;
+        }
+        return new Session(name, approach.time, raw, approach.height);
+    }
+}
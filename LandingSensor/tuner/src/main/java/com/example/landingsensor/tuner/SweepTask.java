@@ -0,0 +1,87 @@
+package com.example.landingsensor.tuner;
+
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Replays a rectangle of the (config x session) grid, splitting it in half along its longer
+ * side until each piece is small enough to run directly.  Returns the summed metrics of each
+ * config in the rectangle, {@code Replay.METRIC_COUNT} values per config.
+ */
+public class SweepTask extends RecursiveTask<double[]> {
+    private static final long serialVersionUID = 1L;
+
+    // Replays per leaf; big enough to amortize task overhead, small enough to balance.
+    private static final int LEAF_REPLAYS = 64;
+
+    private final List<TuningConfig> mConfigs;
+    private final List<Session> mSessions;
+    private final double mCeiling;
+    private final int mConfigStart, mConfigEnd;
+    private final int mSessionStart, mSessionEnd;
+
+    /**
+     * @param ceiling See {@code Replay}.
+     */
+    public SweepTask(List<TuningConfig> configs, List<Session> sessions, double ceiling) {
+        this(configs, sessions, ceiling, 0, configs.size(), 0, sessions.size());
+    }
+
+    private SweepTask(List<TuningConfig> configs, List<Session> sessions, double ceiling,
+                      int configStart, int configEnd, int sessionStart, int sessionEnd) {
+        mConfigs = configs;
+        mSessions = sessions;
+        mCeiling = ceiling;
+        mConfigStart = configStart;
+        mConfigEnd = configEnd;
+        mSessionStart = sessionStart;
+        mSessionEnd = sessionEnd;
+    }
+
+    @Override
+    protected double[] compute() {
+        final int configCount = mConfigEnd - mConfigStart;
+        final int sessionCount = mSessionEnd - mSessionStart;
+        if ((long) configCount * sessionCount <= LEAF_REPLAYS || (configCount == 1 && sessionCount == 1)) {
+            return computeDirectly();
+        }
+
+        if (configCount >= sessionCount) {
+            final int mid = mConfigStart + configCount / 2;
+            final SweepTask left = new SweepTask(mConfigs, mSessions, mCeiling, mConfigStart, mid, mSessionStart, mSessionEnd);
+            final SweepTask right = new SweepTask(mConfigs, mSessions, mCeiling, mid, mConfigEnd, mSessionStart, mSessionEnd);
+            left.fork();
+            final double[] rightMetrics = right.compute();
+            final double[] leftMetrics = left.join();
+            // Disjoint configs: concatenate.
+            final double[] metrics = new double[leftMetrics.length + rightMetrics.length];
+            System.arraycopy(leftMetrics, 0, metrics, 0, leftMetrics.length);
+            System.arraycopy(rightMetrics, 0, metrics, leftMetrics.length, rightMetrics.length);
+            return metrics;
+        }
+
+        final int mid = mSessionStart + sessionCount / 2;
+        final SweepTask left = new SweepTask(mConfigs, mSessions, mCeiling, mConfigStart, mConfigEnd, mSessionStart, mid);
+        final SweepTask right = new SweepTask(mConfigs, mSessions, mCeiling, mConfigStart, mConfigEnd, mid, mSessionEnd);
+        left.fork();
+        final double[] metrics = right.compute();
+        final double[] leftMetrics = left.join();
+        // Same configs over different sessions: sum.
+        for (int i = 0; i < metrics.length; i++) {
+            metrics[i] += leftMetrics[i];
+        }
+        return metrics;
+    }
+
+    private double[] computeDirectly() {
+        final double[] metrics = new double[(mConfigEnd - mConfigStart) * Replay.METRIC_COUNT];
+        for (int c = mConfigStart; c < mConfigEnd; c++) {
+            final Replay replay = new Replay(mConfigs.get(c), mCeiling);
+            final int offset = (c - mConfigStart) * Replay.METRIC_COUNT;
+            for (int s = mSessionStart; s < mSessionEnd; s++) {
+                replay.run(mSessions.get(s), metrics, offset);
+            }
+        }
+        return metrics;
+    }
+}
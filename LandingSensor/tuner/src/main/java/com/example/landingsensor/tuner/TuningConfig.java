@@ -0,0 +1,57 @@
+package com.example.landingsensor.tuner;
+
+import com.example.landingsensor.CalloutTable;
+
+import java.util.Locale;
+
+/**
+ * One point in the parameter grid: the settings a pilot can change in the app's settings
+ * screen, plus the compiled callout table they produce.
+ */
+public class TuningConfig {
+    // Either a callout table spec, or null to use sensitivity and max distance.
+    public final String tableSpec;
+    public final float sensitivity;
+    public final float maxDistance;
+    public final float hysteresis;
+    public final double offset;
+    // 0 means repeat is disabled.
+    public final long repeatIntervalMs;
+    public final long staleTimeoutMs;
+    public final CalloutTable table;
+
+    public TuningConfig(String tableSpec, float sensitivity, float maxDistance, float hysteresis,
+                        double offset, long repeatIntervalMs, long staleTimeoutMs) {
+        this.tableSpec = tableSpec;
+        this.sensitivity = sensitivity;
+        this.maxDistance = maxDistance;
+        this.hysteresis = hysteresis;
+        this.offset = offset;
+        this.repeatIntervalMs = repeatIntervalMs;
+        this.staleTimeoutMs = staleTimeoutMs;
+        // Same rules as DeviceControlActivity.loadCalloutTable().
+        this.table = (tableSpec != null)
+                ? CalloutTable.parse(tableSpec, hysteresis)
+                : CalloutTable.forSensitivity(maxDistance, sensitivity, hysteresis);
+    }
+
+    public static String csvHeader() {
+        return "table,sensitivity,max_distance,hysteresis,offset,repeat_interval_s,stale_timeout_ms";
+    }
+
+    public String toCsv() {
+        return String.format(Locale.US, "\"%s\",%s,%s,%.2f,%.2f,%.1f,%d",
+                (tableSpec != null) ? tableSpec : "",
+                (tableSpec != null) ? "" : String.format(Locale.US, "%.1f", sensitivity),
+                (tableSpec != null) ? "" : String.format(Locale.US, "%.1f", maxDistance),
+                hysteresis, offset, repeatIntervalMs / 1000.0, staleTimeoutMs);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s hyst=%.2f offset=%.2f repeat=%.1fs stale=%dms",
+                (tableSpec != null) ? "table=[" + tableSpec + "]"
+                        : String.format(Locale.US, "sens=%.1f max=%.1f", sensitivity, maxDistance),
+                hysteresis, offset, repeatIntervalMs / 1000.0, staleTimeoutMs);
+    }
+}
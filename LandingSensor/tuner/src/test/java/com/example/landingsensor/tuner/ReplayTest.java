@@ -0,0 +1,59 @@
+package com.example.landingsensor.tuner;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ReplayTest {
+    private static Session descent(double sinkRate) {
+        final int count = (int) (39.0 / sinkRate * 10) + 1;
+        final long[] time = new long[count];
+        final double[] height = new double[count];
+        for (int i = 0; i < count; i++) {
+            time[i] = i * 100L;
+            height[i] = Math.max(0, 39.0 - sinkRate * i / 10.0);
+        }
+        return new Session("descent", time, height, height);
+    }
+
+    @Test
+    public void cleanDescent_callsEveryBand() {
+        final TuningConfig config = new TuningConfig("30, 20, 10, 5, 0", 0, 0, 0.5f, 0, 0, 250);
+        final double[] metrics = new double[Replay.METRIC_COUNT];
+        new Replay(config, 30).run(descent(2.0), metrics, 0);
+        assertEquals(5, metrics[Replay.CALLOUTS], 0);
+        assertEquals(0, metrics[Replay.MISSED_BANDS], 0);
+        assertEquals(1, metrics[Replay.SESSIONS], 0);
+    }
+
+    @Test
+    public void sweep_matchesSequentialReplay() {
+        final Random random = new Random(3);
+        final List<Session> sessions = Arrays.asList(
+                Session.synthetic("a", random, 100, 0), Session.synthetic("b", random, 100, 0),
+                Session.synthetic("c", random, 100, 0));
+        final List<TuningConfig> configs = Arrays.asList(
+                new TuningConfig(null, 2, 30, 0.5f, 0, 0, 250),
+                new TuningConfig(null, 1, 20, 0, 0.5, 5000, 250));
+
+        final double[] parallel = new ForkJoinPool(2).invoke(new SweepTask(configs, sessions, 30));
+        final double[] sequential = new double[configs.size() * Replay.METRIC_COUNT];
+        for (int c = 0; c < configs.size(); c++) {
+            final Replay replay = new Replay(configs.get(c), 30);
+            for (Session session : sessions) {
+                replay.run(session, sequential, c * Replay.METRIC_COUNT);
+            }
+        }
+        assertArrayEquals(sequential, parallel, 1e-9);
+    }
+
+    @Test
+    public void parseList_expandsRanges() {
+        assertArrayEquals(new double[]{0, 0.5, 1, 1.5, 2, 5}, CalloutTuner.parseList("0:2:0.5, 5"), 1e-9);
+    }
+}
@@ -124,7 +124,12 @@ void setup() {
   setupTFMP();
   printTFMPFirmwareVersion();
 
-  pServer->getAdvertising()->start();
+  // The app scans for the service UUID, so it has to be advertised.  The name moves to the
+  // scan response to leave room for the 128-bit UUID.
+  BLEAdvertising *pAdvertising = pServer->getAdvertising();
+  pAdvertising->addServiceUUID(SERVICE_UUID);
+  pAdvertising->setScanResponse(true);
+  pAdvertising->start();
   Serial.println("Waiting for client...");
 }
 